@@ -0,0 +1,140 @@
+package com.example.signme;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Startup work the first screens would otherwise wait on, run once per process while
+ * the splash animation plays: loading the JDBC driver and opening the first pooled
+ * connection, bringing the MySQL schema up to date, and opening (and if need be
+ * upgrading) the on-device database, and loading a remembered driver's profile.
+ *
+ * The splash moves on as soon as whenReady() fires rather than after a fixed delay.
+ * Work that nothing waits on (partition maintenance, delivering queued sessions) is
+ * started once the rest is done.
+ */
+public final class AppWarmup {
+
+    private static final String TAG = "AppWarmup";
+
+    private static AppWarmup instance;
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final AtomicInteger remaining = new AtomicInteger();
+    // Only touched on the main thread
+    private final List<Runnable> readyCallbacks = new ArrayList<>();
+    private boolean ready;
+    // Null until the first connection attempt has finished
+    private volatile Boolean databaseReachable;
+    private Context appContext;
+
+    public static synchronized AppWarmup start(Context context) {
+        if (instance == null) {
+            instance = new AppWarmup();
+            instance.run(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    // Null if warmup hasn't been started or the connection attempt hasn't finished yet
+    public static Boolean isDatabaseReachable() {
+        AppWarmup warmup = instance;
+        return warmup == null ? null : warmup.databaseReachable;
+    }
+
+    private AppWarmup() {
+    }
+
+    private void run(Context context) {
+        appContext = context;
+        remaining.set(2);
+
+        DbExecutor.essential(() -> {
+            try {
+                Connection con = new ConnectionClass().CONN();
+                databaseReachable = con != null;
+                if (con != null) {
+                    con.close(); // Back to the pool, ready for the login query
+                    ConnectionClass.prewarm(); // Replicas, if any
+                    SchemaMigrations.migrate();
+                    // Have the remembered driver's profile ready for Home
+                    String email = LoginSession.getInstance(context).getEmail();
+                    if (email != null) {
+                        DriverProfileStore.getInstance().get(email);
+                    }
+                    SessionIdGenerator.getInstance(context).registerNode();
+                }
+            } catch (SQLException e) {
+                e.printStackTrace();
+            } finally {
+                taskDone();
+            }
+        });
+
+        DbExecutor.essential(() -> {
+            try {
+                LocalDatabaseHelper.getInstance(context).getWritableDatabase();
+                // Send any sessions a previous run queued but couldn't deliver
+                SessionWriteQueue.getInstance(context).flush();
+            } catch (Exception e) {
+                e.printStackTrace();
+            } finally {
+                taskDone();
+            }
+        });
+    }
+
+    /**
+     * Runs callback on the main thread once warmup has finished, or straight away if
+     * it already has. Warmup failures still count as finished; screens report errors.
+     */
+    public void whenReady(Runnable callback) {
+        mainHandler.post(() -> {
+            if (ready) {
+                callback.run();
+            } else {
+                readyCallbacks.add(callback);
+            }
+        });
+    }
+
+    private void taskDone() {
+        if (remaining.decrementAndGet() > 0) {
+            return;
+        }
+        mainHandler.post(() -> {
+            ready = true;
+            Log.d(TAG, "Warmup finished");
+            for (Runnable callback : readyCallbacks) {
+                callback.run();
+            }
+            readyCallbacks.clear();
+        });
+
+        try {
+            if (Boolean.TRUE.equals(databaseReachable)) {
+                DbExecutor.background(SessionPartitionMaintenance::run);
+            }
+            // Measure the BCrypt cost now rather than during the first login, and agree
+            // the fleet cost with the server
+            DbExecutor.background(() -> {
+                try {
+                    PasswordHasher.refreshFleetCost(appContext);
+                } catch (SQLException e) {
+                    e.printStackTrace(); // Keeps the last known fleet cost
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            Log.w(TAG, "Skipping background warmup: " + e.getMessage()); // Both happen on demand too
+        }
+    }
+}
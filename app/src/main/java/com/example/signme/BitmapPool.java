@@ -0,0 +1,79 @@
+package com.example.signme;
+
+import android.graphics.Bitmap;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+
+/**
+ * Small process-wide pool of mutable ARGB_8888 bitmaps.
+ *
+ * Picking and resizing a profile picture allocates several multi-megabyte bitmaps in
+ * a row; reusing them (as BitmapFactory.Options.inBitmap or as scaling targets) keeps
+ * that from churning the heap and triggering GC pauses on low-end phones.
+ */
+public final class BitmapPool {
+
+    private static final long MAX_POOL_BYTES = 16L * 1024 * 1024;
+
+    private static final BitmapPool instance = new BitmapPool();
+
+    // Most recently returned first
+    private final LinkedList<Bitmap> bitmaps = new LinkedList<>();
+    private long pooledBytes;
+
+    public static BitmapPool getInstance() {
+        return instance;
+    }
+
+    private BitmapPool() {
+    }
+
+    /**
+     * Returns a cleared width x height bitmap, reusing a pooled one with enough memory
+     * behind it if there is one.
+     */
+    public Bitmap get(int width, int height) {
+        Bitmap bitmap = takeReusable((long) width * height * 4);
+        if (bitmap == null) {
+            return Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        }
+        bitmap.reconfigure(width, height, Bitmap.Config.ARGB_8888);
+        bitmap.eraseColor(0);
+        return bitmap;
+    }
+
+    // Removes and returns a pooled bitmap of at least minBytes for inBitmap, or null
+    public synchronized Bitmap takeReusable(long minBytes) {
+        Iterator<Bitmap> it = bitmaps.iterator();
+        while (it.hasNext()) {
+            Bitmap bitmap = it.next();
+            if (bitmap.getAllocationByteCount() >= minBytes) {
+                it.remove();
+                pooledBytes -= bitmap.getAllocationByteCount();
+                return bitmap;
+            }
+        }
+        return null;
+    }
+
+    // Hands a bitmap back once nothing draws or reads it any more
+    public synchronized void put(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled() || !bitmap.isMutable()
+                || bitmap.getConfig() != Bitmap.Config.ARGB_8888) {
+            return;
+        }
+        if (bitmap.getAllocationByteCount() > MAX_POOL_BYTES) {
+            bitmap.recycle();
+            return;
+        }
+        bitmaps.addFirst(bitmap);
+        pooledBytes += bitmap.getAllocationByteCount();
+        // Evict the least recently returned until we're back under budget
+        while (pooledBytes > MAX_POOL_BYTES) {
+            Bitmap evicted = bitmaps.removeLast();
+            pooledBytes -= evicted.getAllocationByteCount();
+            evicted.recycle();
+        }
+    }
+}
@@ -8,14 +8,8 @@ import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
 
-import org.mindrot.jbcrypt.BCrypt;
-
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.regex.Pattern;
 
 public class ChangePasswordActivity extends AppCompatActivity {
@@ -25,8 +19,7 @@ public class ChangePasswordActivity extends AppCompatActivity {
     private EditText confirmNewPasswordEditText;
     private Button changePasswordButton;
 
-    private ConnectionClass connectionClass;
-    private Connection con;
+    private DriverDao driverDao;
     private String email;
     private String currentPassword;
 
@@ -35,7 +28,7 @@ public class ChangePasswordActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_change_password);
 
-        connectionClass = new ConnectionClass();
+        driverDao = new DriverDao();
 
         oldPasswordEditText = findViewById(R.id.oldPasswordEditText);
         newPasswordEditText = findViewById(R.id.newPasswordEditText);
@@ -55,35 +48,21 @@ public class ChangePasswordActivity extends AppCompatActivity {
     }
 
     private void fetchCurrentPassword() {
-        ExecutorService executorService = Executors.newSingleThreadExecutor();
-        executorService.execute(() -> {
-            try {
-                con = connectionClass.CONN();
-                if (con == null) {
-                    runOnUiThread(() -> Toast.makeText(ChangePasswordActivity.this, "Error in connection with MySQL server", Toast.LENGTH_SHORT).show());
-                    return;
-                }
-
-                String query = "SELECT PASSWORD FROM driver WHERE EMAIL = ?";
-                PreparedStatement stmt = con.prepareStatement(query);
-                stmt.setString(1, email);
-
-                ResultSet rs = stmt.executeQuery();
-                if (rs.next()) {
-                    currentPassword = rs.getString("PASSWORD");
+        try {
+            DbExecutor.interactive(() -> {
+                try {
+                    currentPassword = driverDao.findPasswordHash(email);
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                    runOnUiThread(() -> Toast.makeText(ChangePasswordActivity.this, "SQL Exception: " + e.getMessage(), Toast.LENGTH_SHORT).show());
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    runOnUiThread(() -> Toast.makeText(ChangePasswordActivity.this, "Exception: " + e.getMessage(), Toast.LENGTH_SHORT).show());
                 }
-
-                rs.close();
-                stmt.close();
-                con.close();
-            } catch (SQLException e) {
-                e.printStackTrace();
-                runOnUiThread(() -> Toast.makeText(ChangePasswordActivity.this, "SQL Exception: " + e.getMessage(), Toast.LENGTH_SHORT).show());
-            } catch (Exception e) {
-                e.printStackTrace();
-                runOnUiThread(() -> Toast.makeText(ChangePasswordActivity.this, "Exception: " + e.getMessage(), Toast.LENGTH_SHORT).show());
-            }
-        });
+            });
+        } catch (RejectedExecutionException e) {
+            Toast.makeText(ChangePasswordActivity.this, "Exception: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+        }
     }
 
     private void changePassword() {
@@ -96,11 +75,6 @@ public class ChangePasswordActivity extends AppCompatActivity {
             return;
         }
 
-        if (!BCrypt.checkpw(oldPassword, currentPassword)) {
-            Toast.makeText(this, "Incorrect old password", Toast.LENGTH_SHORT).show();
-            return;
-        }
-
         if (newPassword.isEmpty() || confirmNewPassword.isEmpty()) {
             Toast.makeText(this, "Please fill in both new password and confirm password fields", Toast.LENGTH_SHORT).show();
             return;
@@ -116,25 +90,20 @@ public class ChangePasswordActivity extends AppCompatActivity {
             return;
         }
 
-        ExecutorService executorService = Executors.newSingleThreadExecutor();
-        executorService.execute(() -> {
+        DbExecutor.essential(() -> {
             try {
-                con = connectionClass.CONN();
-                if (con == null) {
-                    runOnUiThread(() -> Toast.makeText(ChangePasswordActivity.this, "Error in connection with MySQL server", Toast.LENGTH_SHORT).show());
+                // Checking and hashing are slow by design, so both happen here
+                if (!PasswordHasher.verify(oldPassword, currentPassword)) {
+                    runOnUiThread(() -> Toast.makeText(ChangePasswordActivity.this, "Incorrect old password", Toast.LENGTH_SHORT).show());
                     return;
                 }
 
                 // Hash the new password
-                String hashedNewPassword = BCrypt.hashpw(newPassword, BCrypt.gensalt());
+                String hashedNewPassword = PasswordHasher.hash(this, newPassword);
 
-                String query = "UPDATE driver SET PASSWORD = ? WHERE EMAIL = ?";
-                PreparedStatement stmt = con.prepareStatement(query);
-                stmt.setString(1, hashedNewPassword);
-                stmt.setString(2, email);
-
-                int rowsUpdated = stmt.executeUpdate();
-                if (rowsUpdated > 0) {
+                if (driverDao.updatePassword(email, hashedNewPassword)) {
+                    // Other devices have to log in with the new password
+                    LoginSession.getInstance(this).endOtherSessions(email);
                     runOnUiThread(() -> {
                         Toast.makeText(ChangePasswordActivity.this, "Password updated successfully", Toast.LENGTH_SHORT).show();
                         finish();
@@ -142,9 +111,6 @@ public class ChangePasswordActivity extends AppCompatActivity {
                 } else {
                     runOnUiThread(() -> Toast.makeText(ChangePasswordActivity.this, "Failed to update password", Toast.LENGTH_SHORT).show());
                 }
-
-                stmt.close();
-                con.close();
             } catch (SQLException e) {
                 e.printStackTrace();
                 runOnUiThread(() -> Toast.makeText(ChangePasswordActivity.this, "SQL Exception: " + e.getMessage(), Toast.LENGTH_SHORT).show());
@@ -0,0 +1,89 @@
+package com.example.signme;
+
+import android.util.Log;
+
+/**
+ * Fails fast while a database host is known to be down.
+ *
+ * After failureThreshold consecutive failures the breaker opens and every request is
+ * refused immediately. Once openDurationMs has passed a single probe is let through
+ * (half-open); if it succeeds the breaker closes again, otherwise it reopens. A probe
+ * that never reports back, e.g. because the caller hit an unexpected exception, stops
+ * holding things up after another openDurationMs and a new probe is let through.
+ */
+public class CircuitBreaker {
+
+    private static final String TAG = "CircuitBreaker";
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openDurationMs;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean probeInFlight;
+    private long probeStartedAt;
+
+    public CircuitBreaker(String name, int failureThreshold, long openDurationMs) {
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.openDurationMs = openDurationMs;
+    }
+
+    // Returns false if the caller should fail immediately without touching the network
+    public synchronized boolean allowRequest() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.currentTimeMillis() - openedAt < openDurationMs) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                startProbe();
+                Log.i(TAG, name + " half-open, probing");
+                return true;
+            case HALF_OPEN:
+            default:
+                // Only one probe at a time while we find out whether the host is back
+                if (probeInFlight && System.currentTimeMillis() - probeStartedAt < openDurationMs) {
+                    return false;
+                }
+                startProbe();
+                return true;
+        }
+    }
+
+    private void startProbe() {
+        probeInFlight = true;
+        probeStartedAt = System.currentTimeMillis();
+    }
+
+    public synchronized void recordSuccess() {
+        if (state != State.CLOSED) {
+            Log.i(TAG, name + " closed");
+        }
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        probeInFlight = false;
+    }
+
+    public synchronized void recordFailure() {
+        consecutiveFailures++;
+        probeInFlight = false;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            if (state != State.OPEN) {
+                Log.w(TAG, name + " open after " + consecutiveFailures + " failures");
+            }
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+}
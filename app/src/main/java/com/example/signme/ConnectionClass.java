@@ -1,11 +1,12 @@
 package com.example.signme;
 
-import android.media.audiofx.DynamicsProcessing;
 import android.util.Log;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.SQLException;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class ConnectionClass {
     protected static String db = "tsr_system3";
@@ -18,15 +19,140 @@ public class ConnectionClass {
 
     protected static String password = "6968";
 
+    // Read replicas as "host:port"; leave empty to send everything to the primary
+    protected static String[] replicas = {};
+
+    // After a write, reads stay on the primary this long so they see their own changes
+    protected static long readYourWritesWindowMs = 10 * 1000;
+
+    // Timeouts so an unreachable host can't block a screen for the driver default
+    protected static int connectTimeoutMs = 5 * 1000;
+    protected static int socketTimeoutMs = 15 * 1000;
+    protected static int queryTimeoutSeconds = 10;
+
+    // After this many consecutive failures a host is treated as down for a while
+    protected static int breakerFailureThreshold = 3;
+    protected static long breakerOpenDurationMs = 30 * 1000;
+
+    // Pool sizing, kept small since a phone only ever runs a handful of queries at once
+    private static final int POOL_MAX_SIZE = 4;
+    private static final int POOL_MIN_IDLE = 1;
+    private static final long POOL_IDLE_TIMEOUT_MS = 5 * 60 * 1000;
+    private static final long POOL_KEEPALIVE_MS = 60 * 1000;
+    private static final long POOL_BORROW_TIMEOUT_MS = 10 * 1000;
+
+    private static final int PREP_STMT_CACHE_SIZE = 64;
+    private static final int PREP_STMT_CACHE_SQL_LIMIT = 1024;
+
+    private static ConnectionPool primaryPool;
+    private static ConnectionPool[] replicaPools;
+    private static final AtomicInteger nextReplica = new AtomicInteger();
+    private static volatile long lastWriteAt;
+
+    private static synchronized ConnectionPool getPrimaryPool() throws ClassNotFoundException {
+        if (primaryPool == null) {
+            Class.forName("com.mysql.jdbc.Driver");
+            primaryPool = createPool(ip, port, ConnectionClass::recordWrite);
+        }
+        return primaryPool;
+    }
+
+    private static synchronized ConnectionPool[] getReplicaPools() throws ClassNotFoundException {
+        if (replicaPools == null) {
+            Class.forName("com.mysql.jdbc.Driver");
+            replicaPools = new ConnectionPool[replicas.length];
+            for (int i = 0; i < replicas.length; i++) {
+                String[] hostAndPort = replicas[i].split(":");
+                replicaPools[i] = createPool(hostAndPort[0], hostAndPort.length > 1 ? hostAndPort[1] : port, null);
+            }
+        }
+        return replicaPools;
+    }
+
+    private static ConnectionPool createPool(String host, String hostPort, Runnable onCommittedWrite) {
+        String connectionString = baseUrl(host, hostPort)
+                + "&socketTimeout=" + socketTimeoutMs
+                // Server-side prepared statements, cached per pooled connection
+                + "&useServerPrepStmts=true"
+                + "&cachePrepStmts=true"
+                + "&prepStmtCacheSize=" + PREP_STMT_CACHE_SIZE
+                + "&prepStmtCacheSqlLimit=" + PREP_STMT_CACHE_SQL_LIMIT
+                // Lets executeBatch() send one multi-row INSERT instead of a round trip per row
+                + "&rewriteBatchedStatements=true";
+        CircuitBreaker breaker = new CircuitBreaker(host + ":" + hostPort,
+                breakerFailureThreshold, breakerOpenDurationMs);
+        return new ConnectionPool(connectionString, username, password,
+                POOL_MAX_SIZE, POOL_MIN_IDLE, POOL_IDLE_TIMEOUT_MS, POOL_KEEPALIVE_MS,
+                queryTimeoutSeconds, breaker, onCommittedWrite);
+    }
+
+    // Reads are kept on the primary for readYourWritesWindowMs from here
+    private static void recordWrite() {
+        lastWriteAt = System.currentTimeMillis();
+    }
+
+    private static String baseUrl(String host, String hostPort) {
+        return "jdbc:mysql://" + host + ":" + hostPort + "/" + db + "?connectTimeout=" + connectTimeoutMs;
+    }
+
+    /**
+     * Opens an unpooled connection to the primary with no socket timeout, for schema
+     * migrations and partition maintenance. Their DDL and bulk updates can run for
+     * minutes; with the pool's socketTimeout the client would give up on a statement
+     * the server then finishes anyway. Close it when done.
+     */
+    public static Connection openMaintenanceConnection() throws SQLException {
+        try {
+            Class.forName("com.mysql.jdbc.Driver");
+        } catch (ClassNotFoundException e) {
+            throw new SQLException(e);
+        }
+        return DriverManager.getConnection(baseUrl(ip, port) + "&socketTimeout=0", username, password);
+    }
+
+    // Opens a connection in the background so the first screen doesn't pay for the handshake
+    public static void prewarm() {
+        try {
+            getPrimaryPool().prewarm(POOL_MIN_IDLE);
+            for (ConnectionPool replicaPool : getReplicaPools()) {
+                replicaPool.prewarm(POOL_MIN_IDLE);
+            }
+        } catch (Exception e) {
+            Log.e("ERRO", Objects.requireNonNull(e.getMessage()));
+        }
+    }
+
+    // Returns a pooled connection to the primary; close() hands it back to the pool.
+    // Use this for anything that writes.
     public Connection CONN() {
         Connection conn = null;
         try {
-            Class.forName("com.mysql.jdbc.Driver");
-            String connectionString = "jdbc:mysql://" + ip + ":" + port + "/" + db;
-            conn = DriverManager.getConnection(connectionString, username, password);
+            conn = getPrimaryPool().borrow(POOL_BORROW_TIMEOUT_MS);
         } catch (Exception e) {
             Log.e("ERRO", Objects.requireNonNull(e.getMessage()));
         }
         return conn;
     }
-}
\ No newline at end of file
+
+    // Returns a pooled connection for read-only queries. Goes to a replica unless a write
+    // committed recently, in which case the primary is used so the caller sees it.
+    public Connection READ_CONN() {
+        try {
+            ConnectionPool[] pools = getReplicaPools();
+            if (pools.length > 0 && System.currentTimeMillis() - lastWriteAt > readYourWritesWindowMs) {
+                int start = Math.abs(nextReplica.getAndIncrement() % pools.length);
+                for (int i = 0; i < pools.length; i++) {
+                    try {
+                        return pools[(start + i) % pools.length].borrow(POOL_BORROW_TIMEOUT_MS);
+                    } catch (Exception e) {
+                        Log.w("ConnectionClass", "Replica unavailable: " + e.getMessage());
+                    }
+                }
+            }
+            return getPrimaryPool().borrow(POOL_BORROW_TIMEOUT_MS);
+        } catch (Exception e) {
+            Log.e("ERRO", Objects.requireNonNull(e.getMessage()));
+        }
+        return null;
+    }
+}
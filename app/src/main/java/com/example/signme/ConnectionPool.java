@@ -0,0 +1,402 @@
+package com.example.signme;
+
+import android.util.Log;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Small bounded pool of physical MySQL connections.
+ *
+ * Callers get a proxy whose close() hands the physical connection back to the pool
+ * instead of tearing down the socket, so the existing "open, use, close" pattern in
+ * the activities keeps working unchanged.
+ *
+ * If the pool is given an onCommittedWrite callback it runs after each write through
+ * the pool becomes visible: when an update or batch returns in auto-commit mode, or
+ * when a transaction that wrote commits.
+ */
+public class ConnectionPool {
+
+    private static final String TAG = "ConnectionPool";
+
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    private final String url;
+    private final String username;
+    private final String password;
+    private final int minIdle;
+    private final long idleTimeoutMs;
+    private final long keepAliveMs;
+    private final int queryTimeoutSeconds;
+    private final CircuitBreaker breaker;
+    private final Runnable onCommittedWrite;
+
+    // Idle connections, most recently used first
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    // One permit per connection currently handed out to a caller
+    private final Semaphore permits;
+    private final ScheduledExecutorService housekeeper;
+
+    public ConnectionPool(String url, String username, String password,
+                          int maxSize, int minIdle, long idleTimeoutMs, long keepAliveMs,
+                          int queryTimeoutSeconds, CircuitBreaker breaker, Runnable onCommittedWrite) {
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.minIdle = minIdle;
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.keepAliveMs = keepAliveMs;
+        this.queryTimeoutSeconds = queryTimeoutSeconds;
+        this.breaker = breaker;
+        this.onCommittedWrite = onCommittedWrite;
+        this.permits = new Semaphore(maxSize, true);
+
+        housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "db-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1000, Math.min(idleTimeoutMs, keepAliveMs) / 2);
+        housekeeper.scheduleWithFixedDelay(this::housekeep, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection, waiting up to timeoutMs for one to become free.
+     * Idle connections are validated before being handed out. Fails immediately
+     * while the circuit breaker considers the host down.
+     */
+    public Connection borrow(long timeoutMs) throws SQLException {
+        QueryScope scope = QueryScope.current();
+        if (scope != null) {
+            scope.checkNotCancelled();
+        }
+        try {
+            if (!permits.tryAcquire(timeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Timed out waiting for a pooled connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a pooled connection", e);
+        }
+
+        if (!breaker.allowRequest()) {
+            permits.release();
+            throw new SQLException("Database unavailable, failing fast", "08001");
+        }
+
+        try {
+            PooledConnection pooled;
+            while ((pooled = idle.pollFirst()) != null) {
+                if (isUsable(pooled.physical)) {
+                    breaker.recordSuccess();
+                    return wrap(pooled, scope);
+                }
+                closeQuietly(pooled.physical);
+            }
+            return wrap(new PooledConnection(open()), scope);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens connections in the background until at least count are idle,
+     * so the first screen that needs the database skips the handshake.
+     */
+    public void prewarm(int count) {
+        housekeeper.execute(() -> {
+            while (idle.size() < count && permits.tryAcquire()) {
+                if (!breaker.allowRequest()) {
+                    permits.release();
+                    return;
+                }
+                try {
+                    idle.offerFirst(new PooledConnection(open()));
+                } catch (SQLException e) {
+                    Log.w(TAG, "Prewarm failed: " + e.getMessage());
+                    return;
+                } finally {
+                    permits.release();
+                }
+            }
+        });
+    }
+
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    private Connection open() throws SQLException {
+        try {
+            Connection connection = DriverManager.getConnection(url, username, password);
+            breaker.recordSuccess();
+            return connection;
+        } catch (SQLException | RuntimeException e) {
+            // Anything but a recorded outcome would leave a half-open probe in flight
+            breaker.recordFailure();
+            throw e;
+        }
+    }
+
+    private void release(PooledConnection pooled) {
+        try {
+            if (pooled.physical.isClosed()) {
+                return;
+            }
+            if (!pooled.physical.getAutoCommit()) {
+                pooled.physical.rollback();
+                pooled.physical.setAutoCommit(true);
+            }
+            pooled.lastUsed = System.currentTimeMillis();
+            idle.offerFirst(pooled);
+        } catch (SQLException e) {
+            closeQuietly(pooled.physical);
+        } finally {
+            permits.release();
+        }
+    }
+
+    // Closes a connection whose statements were cancelled instead of reusing it
+    private void discard(PooledConnection pooled) {
+        closeQuietly(pooled.physical);
+        permits.release();
+    }
+
+    // Evicts connections idle past the timeout (down to minIdle) and pings the rest
+    private void housekeep() {
+        long now = System.currentTimeMillis();
+        Iterator<PooledConnection> it = idle.descendingIterator();
+        while (it.hasNext()) {
+            PooledConnection pooled = it.next();
+            long idleFor = now - pooled.lastUsed;
+            if (idleFor >= idleTimeoutMs && idle.size() > minIdle) {
+                if (idle.remove(pooled)) {
+                    closeQuietly(pooled.physical);
+                }
+            } else if (idleFor >= keepAliveMs) {
+                if (!idle.remove(pooled)) {
+                    continue; // Borrowed in the meantime
+                }
+                if (isUsable(pooled.physical)) {
+                    pooled.lastUsed = now;
+                    idle.offerLast(pooled);
+                } else {
+                    closeQuietly(pooled.physical);
+                }
+            }
+        }
+        if (idle.size() < minIdle) {
+            prewarm(minIdle);
+        }
+    }
+
+    private static boolean isUsable(Connection connection) {
+        try {
+            return !connection.isClosed() && connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            Log.w(TAG, "Failed to close connection: " + e.getMessage());
+        }
+    }
+
+    private Connection wrap(PooledConnection pooled, QueryScope scope) {
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new Handle(pooled, scope));
+    }
+
+    private static class PooledConnection {
+        final Connection physical;
+        volatile long lastUsed = System.currentTimeMillis();
+
+        PooledConnection(Connection physical) {
+            this.physical = physical;
+        }
+    }
+
+    // Forwards everything to the physical connection except close()/isClosed(),
+    // and applies the query timeout to every statement created through it. While it
+    // is borrowed, the borrower's QueryScope (if any) can cancel those statements.
+    private class Handle implements InvocationHandler, QueryScope.Member {
+        private final PooledConnection pooled;
+        private final QueryScope scope;
+        // Guarded by this, like returned
+        private final List<Statement> statements = new ArrayList<>();
+        private boolean returned;
+        // Only touched by the borrowing thread
+        private boolean uncommittedWrite;
+
+        Handle(PooledConnection pooled, QueryScope scope) {
+            this.pooled = pooled;
+            this.scope = scope;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    synchronized (this) {
+                        if (!returned) {
+                            returned = true;
+                            statements.clear();
+                            if (scope != null) {
+                                scope.unregister(this);
+                            }
+                            if (scope != null && scope.isCancelled()) {
+                                discard(pooled);
+                            } else {
+                                release(pooled);
+                            }
+                        }
+                    }
+                    return null;
+                case "isClosed":
+                    synchronized (this) {
+                        return returned || pooled.physical.isClosed();
+                    }
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    synchronized (this) {
+                        if (returned) {
+                            throw new SQLException("Connection has already been returned to the pool");
+                        }
+                    }
+                    Object result;
+                    try {
+                        result = method.invoke(pooled.physical, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                    if (result instanceof Statement) {
+                        if (queryTimeoutSeconds > 0) {
+                            ((Statement) result).setQueryTimeout(queryTimeoutSeconds);
+                        }
+                        if (scope != null) {
+                            track((Statement) result);
+                        }
+                        if (onCommittedWrite != null) {
+                            result = watchWrites((Statement) result, method.getReturnType());
+                        }
+                    } else if (onCommittedWrite != null) {
+                        afterTransactionCall(method.getName(), args);
+                    }
+                    return result;
+            }
+        }
+
+        // Hands out a statement that reports its writes, as the same interface the caller asked for
+        private Object watchWrites(Statement statement, Class<?> type) {
+            return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                    (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "equals":
+                                return proxy == args[0];
+                            case "hashCode":
+                                return System.identityHashCode(proxy);
+                            default:
+                                Object result;
+                                try {
+                                    result = method.invoke(statement, args);
+                                } catch (InvocationTargetException e) {
+                                    throw e.getCause();
+                                }
+                                if (isWrite(method.getName(), result)) {
+                                    wrote();
+                                }
+                                return result;
+                        }
+                    });
+        }
+
+        // execute() returns false for anything that doesn't produce a result set
+        private boolean isWrite(String method, Object result) {
+            switch (method) {
+                case "executeUpdate":
+                case "executeLargeUpdate":
+                case "executeBatch":
+                case "executeLargeBatch":
+                    return true;
+                case "execute":
+                    return Boolean.FALSE.equals(result);
+                default:
+                    return false;
+            }
+        }
+
+        private void wrote() throws SQLException {
+            if (pooled.physical.getAutoCommit()) {
+                onCommittedWrite.run();
+            } else {
+                uncommittedWrite = true;
+            }
+        }
+
+        private void afterTransactionCall(String method, Object[] args) {
+            boolean committed = method.equals("commit")
+                    || (method.equals("setAutoCommit") && Boolean.TRUE.equals(args[0]));
+            if (committed && uncommittedWrite) {
+                onCommittedWrite.run();
+            }
+            if (committed || (method.equals("rollback") && args == null)) {
+                uncommittedWrite = false;
+            }
+        }
+
+        private void track(Statement statement) throws SQLException {
+            synchronized (this) {
+                statements.add(statement);
+            }
+            try {
+                scope.register(this);
+            } catch (SQLException e) {
+                statement.close();
+                throw e;
+            }
+        }
+
+        // Holds the lock so the connection can't go back to the pool, and on to
+        // another borrower, while its statements are being cancelled
+        @Override
+        public synchronized void cancelStatements() {
+            if (returned) {
+                return;
+            }
+            for (Statement statement : statements) {
+                try {
+                    if (!statement.isClosed()) {
+                        statement.cancel();
+                    }
+                } catch (SQLException e) {
+                    Log.w(TAG, "Failed to cancel statement: " + e.getMessage());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.signme;
+
+import android.util.Log;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * App-wide executor for database work.
+ *
+ * Replaces the per-call Executors.newSingleThreadExecutor() that every screen used to
+ * create. Interactive reads (things a screen is waiting on) always run ahead of
+ * background writes, and each priority's queue is capped so a burst of taps can't
+ * pile up work. Tasks that were cancelled while queued (e.g. a superseded search)
+ * are taken out of the queue and don't count against the cap.
+ */
+public final class DbExecutor {
+
+    private static final String TAG = "DbExecutor";
+
+    public static final int PRIORITY_INTERACTIVE = 0;
+    public static final int PRIORITY_BACKGROUND = 1;
+
+    // A few threads is plenty: the connection pool only hands out a handful of connections
+    private static final int THREAD_COUNT = 3;
+    private static final long THREAD_KEEPALIVE_SECONDS = 30;
+
+    // Queued (not yet running, not cancelled) tasks allowed per priority
+    private static final int MAX_QUEUE_DEPTH = 32;
+    private static final int MAX_BACKGROUND_QUEUE_DEPTH = 16;
+
+    private static final ThreadPoolExecutor executor;
+    private static final AtomicLong sequence = new AtomicLong();
+    // Indexed by priority
+    private static final AtomicInteger[] queued = {new AtomicInteger(), new AtomicInteger()};
+
+    // Metrics
+    private static final AtomicLong submittedCount = new AtomicLong();
+    private static final AtomicLong completedCount = new AtomicLong();
+    private static final AtomicLong failedCount = new AtomicLong();
+    private static final AtomicLong rejectedCount = new AtomicLong();
+    private static final AtomicLong totalQueueWaitMs = new AtomicLong();
+    private static final AtomicInteger peakQueueDepth = new AtomicInteger();
+
+    static {
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(THREAD_COUNT, THREAD_COUNT,
+                THREAD_KEEPALIVE_SECONDS, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<>(),
+                r -> {
+                    Thread thread = new Thread(r, "db-worker-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    private DbExecutor() {
+    }
+
+    // Queues work a screen is waiting on, e.g. loading a profile
+    public static Future<?> interactive(Runnable task) {
+        return submit(PRIORITY_INTERACTIVE, task);
+    }
+
+    // Queues writes and other work nobody is actively waiting to see
+    public static Future<?> background(Runnable task) {
+        return submit(PRIORITY_BACKGROUND, task);
+    }
+
+    /**
+     * Queues work the user has asked for and is waiting on, like saving a form or
+     * logging in. Runs at interactive priority and is never refused for queue depth.
+     */
+    public static Future<?> essential(Runnable task) {
+        return enqueue(new PrioritizedTask(PRIORITY_INTERACTIVE, task));
+    }
+
+    /**
+     * Queues a task at the given priority.
+     *
+     * @throws RejectedExecutionException if that priority's queue is full; nothing runs
+     */
+    public static Future<?> submit(int priority, Runnable task) {
+        int depth = queued[priority].get();
+        int limit = priority == PRIORITY_INTERACTIVE ? MAX_QUEUE_DEPTH : MAX_BACKGROUND_QUEUE_DEPTH;
+        if (depth >= limit) {
+            rejectedCount.incrementAndGet();
+            Log.w(TAG, "Rejected task, queue depth " + depth + " (limit " + limit + ")");
+            throw new RejectedExecutionException("Database queue is full");
+        }
+        return enqueue(new PrioritizedTask(priority, task));
+    }
+
+    private static Future<?> enqueue(PrioritizedTask prioritized) {
+        submittedCount.incrementAndGet();
+        queued[prioritized.priority].incrementAndGet();
+        executor.execute(prioritized);
+
+        int newDepth = getQueueDepth();
+        int peak;
+        while (newDepth > (peak = peakQueueDepth.get()) && !peakQueueDepth.compareAndSet(peak, newDepth)) {
+            // Retry until the peak is recorded
+        }
+        return prioritized;
+    }
+
+    // Tasks waiting to run, not counting cancelled ones
+    public static int getQueueDepth() {
+        return queued[PRIORITY_INTERACTIVE].get() + queued[PRIORITY_BACKGROUND].get();
+    }
+
+    public static int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    public static String getMetrics() {
+        long completed = completedCount.get();
+        long avgWait = completed == 0 ? 0 : totalQueueWaitMs.get() / completed;
+        return "submitted=" + submittedCount.get()
+                + " completed=" + completed
+                + " failed=" + failedCount.get()
+                + " rejected=" + rejectedCount.get()
+                + " queued=" + getQueueDepth()
+                + " peakQueued=" + peakQueueDepth.get()
+                + " active=" + getActiveCount()
+                + " avgWaitMs=" + avgWait;
+    }
+
+    // Orders by priority first, then FIFO within the same priority
+    private static class PrioritizedTask extends FutureTask<Void> implements Comparable<PrioritizedTask> {
+        private final int priority;
+        private final long order = sequence.getAndIncrement();
+        private final long enqueuedAt = System.currentTimeMillis();
+        // Set once the task has left the queue, by starting or by being cancelled
+        private final AtomicBoolean dequeued = new AtomicBoolean();
+
+        PrioritizedTask(int priority, Runnable task) {
+            super(task, null);
+            this.priority = priority;
+        }
+
+        @Override
+        public void run() {
+            leaveQueue();
+            totalQueueWaitMs.addAndGet(System.currentTimeMillis() - enqueuedAt);
+            super.run();
+        }
+
+        @Override
+        protected void done() {
+            if (isCancelled()) {
+                // Don't leave it taking up a slot until a worker gets round to skipping it
+                if (leaveQueue()) {
+                    executor.remove(this);
+                }
+                return;
+            }
+            completedCount.incrementAndGet();
+            try {
+                get();
+            } catch (Exception e) {
+                failedCount.incrementAndGet();
+                Log.e(TAG, "Database task failed", e.getCause() != null ? e.getCause() : e);
+            }
+        }
+
+        private boolean leaveQueue() {
+            if (!dequeued.compareAndSet(false, true)) {
+                return false;
+            }
+            queued[priority].decrementAndGet();
+            return true;
+        }
+
+        @Override
+        public int compareTo(PrioritizedTask other) {
+            if (priority != other.priority) {
+                return Integer.compare(priority, other.priority);
+            }
+            return Long.compare(order, other.order);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.signme;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Owns the device table: one row per install, whose AUTO_INCREMENT id becomes that
+ * install's SessionIdGenerator node id, and which records the BCrypt cost each install
+ * calibrated (see PasswordHasher).
+ */
+public class DeviceDao {
+
+    private static final String INSERT =
+            "INSERT INTO device (REGISTERED_AT) VALUES (NOW())";
+    private static final String UPDATE_BCRYPT_COST =
+            "UPDATE device SET BCRYPT_COST = ?, COST_REPORTED_AT = NOW() WHERE DEVICE_ID = ?";
+    // Installs that haven't reported in this long are assumed gone and no longer hold the cost down
+    private static final String SELECT_MIN_BCRYPT_COST =
+            "SELECT MIN(BCRYPT_COST) FROM device WHERE COST_REPORTED_AT > NOW() - INTERVAL 90 DAY";
+
+    private final ConnectionClass connectionClass = new ConnectionClass();
+
+    // Registers a new install and returns its id
+    public long register() throws SQLException {
+        Connection con = connectionClass.CONN();
+        if (con == null) {
+            throw new SQLException("Error in connection with MySQL server");
+        }
+        try (PreparedStatement stmt = con.prepareStatement(INSERT, Statement.RETURN_GENERATED_KEYS)) {
+            stmt.executeUpdate();
+            try (ResultSet rs = stmt.getGeneratedKeys()) {
+                if (!rs.next()) {
+                    throw new SQLException("No id generated for device");
+                }
+                return rs.getLong(1);
+            }
+        } finally {
+            con.close();
+        }
+    }
+
+    /**
+     * Records the BCrypt cost this install calibrated and returns the lowest cost reported
+     * by any recently active install, including this one.
+     */
+    public int reportBcryptCost(long deviceId, int cost) throws SQLException {
+        Connection con = connectionClass.CONN();
+        if (con == null) {
+            throw new SQLException("Error in connection with MySQL server");
+        }
+        try (PreparedStatement update = con.prepareStatement(UPDATE_BCRYPT_COST);
+             PreparedStatement select = con.prepareStatement(SELECT_MIN_BCRYPT_COST)) {
+            update.setInt(1, cost);
+            update.setLong(2, deviceId);
+            update.executeUpdate();
+            try (ResultSet rs = select.executeQuery()) {
+                rs.next();
+                int fleetCost = rs.getInt(1);
+                return rs.wasNull() ? cost : fleetCost;
+            }
+        } finally {
+            con.close();
+        }
+    }
+}
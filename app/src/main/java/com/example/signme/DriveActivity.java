@@ -9,19 +9,10 @@ import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.SQLException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.sql.Timestamp;
 
 public class DriveActivity extends AppCompatActivity {
 
-    ConnectionClass connectionClass;
-    Connection con;
-
     private AutoCompleteTextView startingPointAutoComplete;
     private AutoCompleteTextView destinationAutoComplete;
     private Button startButton;
@@ -32,8 +23,6 @@ public class DriveActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_drive);
 
-        connectionClass = new ConnectionClass(); // Initialize your connection class properly
-
         // Initialize views
         startingPointAutoComplete = findViewById(R.id.startingPoint);
         destinationAutoComplete = findViewById(R.id.destination);
@@ -70,55 +59,21 @@ public class DriveActivity extends AppCompatActivity {
             return;
         }
 
-        // Generate SESSION_ID in format DDMMYYYY-HHmm (e.g., 01122023-1223)
-        String sessionId = generateSessionId();
+        // Time-ordered and unique per device, see SessionIdGenerator
+        String sessionId = SessionIdGenerator.getInstance(this).next();
 
         // Get current date and time
-        SimpleDateFormat sdf = new SimpleDateFormat("dd-MM-yyyy HH:mm:ss");
-        String sessionStartTime = sdf.format(new Date());
+        Timestamp sessionStartTime = new Timestamp(System.currentTimeMillis());
 
         // Insert session data into the database
         saveSessionData(userEmail, sessionId, startingPoint, destination, vehicleType, sessionStartTime);
     }
 
-    private void saveSessionData(String email, String sessionId, String startingPoint, String destination, String vehicleType, String sessionStartTime) {
-        ExecutorService executorService = Executors.newSingleThreadExecutor();
-        executorService.execute(() -> {
-            try {
-                con = connectionClass.CONN();
-                if (con == null) {
-                    runOnUiThread(() -> Toast.makeText(this, "Error in connection with MySQL server", Toast.LENGTH_SHORT).show());
-                    return;
-                }
-
-                String query = "INSERT INTO session (EMAIL, SESSION_ID, START_LOCATION, DESTINATION, VEHICLE_TYPE, SESSION_START_TIME) VALUES (?, ?, ?, ?, ?, ?)";
-                PreparedStatement stmt = con.prepareStatement(query);
-                stmt.setString(1, email);
-                stmt.setString(2, sessionId);
-                stmt.setString(3, startingPoint);
-                stmt.setString(4, destination);
-                stmt.setString(5, vehicleType);
-                stmt.setString(6, sessionStartTime);
-
-                int rowsInserted = stmt.executeUpdate();
-                runOnUiThread(() -> {
-                    if (rowsInserted > 0) {
-                        Toast.makeText(this, "Session started and saved successfully", Toast.LENGTH_SHORT).show();
-                    } else {
-                        Toast.makeText(this, "Failed to start session", Toast.LENGTH_SHORT).show();
-                    }
-                });
-
-                stmt.close();
-                con.close();
-            } catch (SQLException e) {
-                e.printStackTrace();
-                runOnUiThread(() -> Toast.makeText(this, "SQL Exception: " + e.getMessage(), Toast.LENGTH_SHORT).show());
-            } catch (Exception e) {
-                e.printStackTrace();
-                runOnUiThread(() -> Toast.makeText(this, "Exception: " + e.getMessage(), Toast.LENGTH_SHORT).show());
-            }
-        });
+    private void saveSessionData(String email, String sessionId, String startingPoint, String destination, String vehicleType, Timestamp sessionStartTime) {
+        Session session = new Session(sessionId, email, startingPoint, destination, vehicleType, sessionStartTime, null);
+        // Queued on the device and sent in the background, so this never waits on MySQL
+        SessionWriteQueue.getInstance(this).enqueue(session);
+        Toast.makeText(this, "Session started and saved successfully", Toast.LENGTH_SHORT).show();
     }
 
     // Method to retrieve Sri Lankan cities for autocomplete suggestions
@@ -134,10 +89,4 @@ public class DriveActivity extends AppCompatActivity {
                 "Anuradhapura New Town"
         };
     }
-
-    // Method to generate SESSION_ID in format DDMMYYYY-HHmm
-    private String generateSessionId() {
-        SimpleDateFormat sdf = new SimpleDateFormat("ddMMyyyy-HHmmss");
-        return sdf.format(new Date());
-    }
 }
@@ -0,0 +1,66 @@
+package com.example.signme;
+
+// A row of the driver table. The picture itself lives in profile_image; the row only
+// carries the content hash of the current one (null if the driver hasn't set one).
+// VERSION is bumped by every details edit, see DriverProfileStore.updateDetails().
+public class Driver {
+
+    private final String email;
+    private final String firstName;
+    private final String lastName;
+    private final String dateOfBirth;
+    private final String profileImageHash;
+    private final int version;
+
+    public Driver(String email, String firstName, String lastName, String dateOfBirth, String profileImageHash,
+                  int version) {
+        this.email = email;
+        this.firstName = firstName;
+        this.lastName = lastName;
+        this.dateOfBirth = dateOfBirth;
+        this.profileImageHash = profileImageHash;
+        this.version = version;
+    }
+
+    // Copy with the editable details replaced, same version
+    public Driver withDetails(String firstName, String lastName, String dateOfBirth) {
+        return new Driver(email, firstName, lastName, dateOfBirth, profileImageHash, version);
+    }
+
+    // Copy with a new picture; the hash isn't versioned, so neither is this
+    public Driver withProfileImageHash(String profileImageHash) {
+        return new Driver(email, firstName, lastName, dateOfBirth, profileImageHash, version);
+    }
+
+    public Driver withVersion(int version) {
+        return new Driver(email, firstName, lastName, dateOfBirth, profileImageHash, version);
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public String getFirstName() {
+        return firstName;
+    }
+
+    public String getLastName() {
+        return lastName;
+    }
+
+    public String getFullName() {
+        return firstName + " " + lastName;
+    }
+
+    public String getDateOfBirth() {
+        return dateOfBirth;
+    }
+
+    public String getProfileImageHash() {
+        return profileImageHash;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.signme;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Owns every query against the driver table.
+ *
+ * Statements are prepared on pooled connections opened with server-side prepared
+ * statement caching, so after the first use on a connection a query is neither
+ * re-parsed by the server nor re-sent as text.
+ */
+public class DriverDao {
+
+    private static final String SELECT_BY_EMAIL =
+            "SELECT FIRST_NAME, LAST_NAME, DATE_OF_BIRTH, PROFILE_IMAGE_HASH, VERSION FROM driver WHERE EMAIL = ?";
+    private static final String SELECT_LEGACY_PICTURE =
+            "SELECT PROFILE_PICTURE FROM driver WHERE EMAIL = ? AND PROFILE_IMAGE_HASH IS NULL";
+    private static final String SELECT_PASSWORD_BY_EMAIL =
+            "SELECT PASSWORD FROM driver WHERE EMAIL = ?";
+    private static final String SELECT_EMAIL =
+            "SELECT EMAIL FROM driver WHERE EMAIL = ?";
+    private static final String INSERT =
+            "INSERT INTO driver (FIRST_NAME, LAST_NAME, EMAIL, PASSWORD) VALUES (?, ?, ?, ?)";
+    private static final String UPDATE_DETAILS =
+            "UPDATE driver SET FIRST_NAME = ?, LAST_NAME = ?, DATE_OF_BIRTH = ?, VERSION = VERSION + 1 " +
+            "WHERE EMAIL = ? AND VERSION = ?";
+    private static final String UPDATE_PASSWORD =
+            "UPDATE driver SET PASSWORD = ? WHERE EMAIL = ?";
+    private static final String REPLACE_PASSWORD_HASH =
+            "UPDATE driver SET PASSWORD = ? WHERE EMAIL = ? AND PASSWORD = ?";
+
+    private final ConnectionClass connectionClass = new ConnectionClass();
+
+    // Returns the driver's name, date of birth and picture hash, or null if there is no such driver
+    public Driver findByEmail(String email) throws SQLException {
+        Connection con = readConnection();
+        try (PreparedStatement stmt = con.prepareStatement(SELECT_BY_EMAIL)) {
+            stmt.setString(1, email);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                return new Driver(email,
+                        rs.getString("FIRST_NAME"),
+                        rs.getString("LAST_NAME"),
+                        rs.getString("DATE_OF_BIRTH"),
+                        rs.getString("PROFILE_IMAGE_HASH"),
+                        rs.getInt("VERSION"));
+            }
+        } finally {
+            con.close();
+        }
+    }
+
+    /**
+     * Returns the full-size picture stored in driver.PROFILE_PICTURE before pictures
+     * moved to profile_image, or null once it has been converted (or if there is none).
+     */
+    public byte[] findLegacyPicture(String email) throws SQLException {
+        Connection con = readConnection();
+        try (PreparedStatement stmt = con.prepareStatement(SELECT_LEGACY_PICTURE)) {
+            stmt.setString(1, email);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getBytes("PROFILE_PICTURE") : null;
+            }
+        } finally {
+            con.close();
+        }
+    }
+
+    // Returns the stored BCrypt hash, or null if there is no such driver
+    public String findPasswordHash(String email) throws SQLException {
+        Connection con = readConnection();
+        try (PreparedStatement stmt = con.prepareStatement(SELECT_PASSWORD_BY_EMAIL)) {
+            stmt.setString(1, email);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getString("PASSWORD") : null;
+            }
+        } finally {
+            con.close();
+        }
+    }
+
+    public boolean exists(String email) throws SQLException {
+        Connection con = readConnection();
+        try (PreparedStatement stmt = con.prepareStatement(SELECT_EMAIL)) {
+            stmt.setString(1, email);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        } finally {
+            con.close();
+        }
+    }
+
+    public boolean insert(String firstName, String lastName, String email, String passwordHash) throws SQLException {
+        Connection con = writeConnection();
+        try (PreparedStatement stmt = con.prepareStatement(INSERT)) {
+            stmt.setString(1, firstName);
+            stmt.setString(2, lastName);
+            stmt.setString(3, email);
+            stmt.setString(4, passwordHash);
+            return stmt.executeUpdate() > 0;
+        } finally {
+            con.close();
+        }
+    }
+
+    /**
+     * Writes the details only if the row is still at expectedVersion, bumping it.
+     * Returns false if another edit got there first (or there is no such driver).
+     */
+    public boolean updateDetails(String email, String firstName, String lastName, String dateOfBirth,
+                                 int expectedVersion) throws SQLException {
+        Connection con = writeConnection();
+        try (PreparedStatement stmt = con.prepareStatement(UPDATE_DETAILS)) {
+            stmt.setString(1, firstName);
+            stmt.setString(2, lastName);
+            stmt.setString(3, dateOfBirth);
+            stmt.setString(4, email);
+            stmt.setInt(5, expectedVersion);
+            return stmt.executeUpdate() > 0;
+        } finally {
+            con.close();
+        }
+    }
+
+    public boolean updatePassword(String email, String passwordHash) throws SQLException {
+        Connection con = writeConnection();
+        try (PreparedStatement stmt = con.prepareStatement(UPDATE_PASSWORD)) {
+            stmt.setString(1, passwordHash);
+            stmt.setString(2, email);
+            return stmt.executeUpdate() > 0;
+        } finally {
+            con.close();
+        }
+    }
+
+    // Swaps in a rehash of the same password, unless the password changed in the meantime
+    public boolean replacePasswordHash(String email, String oldHash, String newHash) throws SQLException {
+        Connection con = writeConnection();
+        try (PreparedStatement stmt = con.prepareStatement(REPLACE_PASSWORD_HASH)) {
+            stmt.setString(1, newHash);
+            stmt.setString(2, email);
+            stmt.setString(3, oldHash);
+            return stmt.executeUpdate() > 0;
+        } finally {
+            con.close();
+        }
+    }
+
+    private Connection readConnection() throws SQLException {
+        Connection con = connectionClass.READ_CONN();
+        if (con == null) {
+            throw new SQLException("Error in connection with MySQL server");
+        }
+        return con;
+    }
+
+    private Connection writeConnection() throws SQLException {
+        Connection con = connectionClass.CONN();
+        if (con == null) {
+            throw new SQLException("Error in connection with MySQL server");
+        }
+        return con;
+    }
+}
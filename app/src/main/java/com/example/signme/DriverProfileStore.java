@@ -0,0 +1,200 @@
+package com.example.signme;
+
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide cache of driver rows, shared by Home, Profile and Edit Profile.
+ *
+ * Concurrent loads of the same email are coalesced into one query, so opening the
+ * profile (which loads from both onCreate and onResume) or bouncing between screens
+ * costs at most one round trip. Writers call invalidate() and observers reload.
+ *
+ * Details edits go through updateDetails(), which shows them at once and writes them
+ * in the background against the row version they were based on.
+ */
+public class DriverProfileStore {
+
+    public interface Observer {
+        // Called on the writer's thread after the cached row for email was dropped
+        void onProfileChanged(String email);
+    }
+
+    public interface EditCallback {
+        // Called on a database thread once the edit is saved (error null) or abandoned
+        void onEditFinished(String email, boolean merged, SQLException error);
+    }
+
+    // Conflicting writes from other devices we'll merge with before giving up
+    private static final int MAX_EDIT_ATTEMPTS = 3;
+
+    private static final DriverProfileStore instance = new DriverProfileStore();
+
+    private final DriverDao driverDao = new DriverDao();
+    private final Map<String, Driver> cache = new ConcurrentHashMap<>();
+    private final Map<String, FutureTask<Driver>> inFlight = new ConcurrentHashMap<>();
+    private final CopyOnWriteArrayList<Observer> observers = new CopyOnWriteArrayList<>();
+    // Bumped on every invalidation so a load that raced with a write isn't cached
+    private final AtomicLong generation = new AtomicLong();
+
+    public static DriverProfileStore getInstance() {
+        return instance;
+    }
+
+    private DriverProfileStore() {
+    }
+
+    /**
+     * Returns the cached row, or loads it if there is none.
+     * Blocks, so call it from a DbExecutor task. Returns null if there is no such driver.
+     */
+    public Driver get(String email) throws SQLException {
+        while (true) {
+            Driver cached = cache.get(email);
+            if (cached != null) {
+                return cached;
+            }
+
+            long loadGeneration = generation.get();
+            FutureTask<Driver> task = new FutureTask<>(() -> {
+                Driver driver = driverDao.findByEmail(email);
+                if (driver != null && generation.get() == loadGeneration) {
+                    cache.put(email, driver);
+                }
+                return driver;
+            });
+            FutureTask<Driver> existing = inFlight.putIfAbsent(email, task);
+            if (existing == null) {
+                existing = task;
+                task.run();
+            }
+
+            try {
+                return existing.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while loading profile", e);
+            } catch (ExecutionException e) {
+                QueryScope scope = QueryScope.current();
+                if (existing != task && isCancellation(e.getCause()) && (scope == null || !scope.isCancelled())) {
+                    continue; // The screen whose load we joined went away; load it ourselves
+                }
+                if (e.getCause() instanceof SQLException) {
+                    throw (SQLException) e.getCause();
+                }
+                throw new SQLException(e.getCause());
+            } finally {
+                inFlight.remove(email, existing);
+            }
+        }
+    }
+
+    private static boolean isCancellation(Throwable e) {
+        return e instanceof SQLException && "70100".equals(((SQLException) e).getSQLState());
+    }
+
+    // Returns the cached row without touching the database, or null
+    public Driver peek(String email) {
+        return cache.get(email);
+    }
+
+    // Drops the cached row after a write and tells observers to reload
+    public void invalidate(String email) {
+        generation.incrementAndGet();
+        cache.remove(email);
+        notifyChanged(email);
+    }
+
+    /**
+     * Records a picture hash the caller has just written in the cached row, if there is
+     * one, without telling observers. For a screen that converted the picture while
+     * loading itself, which a reload would only repeat.
+     */
+    public void updateCachedImageHash(String email, String profileImageHash) {
+        generation.incrementAndGet(); // A load already in flight may have read the old hash
+        cache.computeIfPresent(email, (key, driver) -> driver.withProfileImageHash(profileImageHash));
+    }
+
+    /**
+     * Applies an edit of base's details to the cached row straight away, so every
+     * screen shows it before the server has seen it, then writes it on DbExecutor.
+     *
+     * The write only lands if the row is still at base's version. If another device
+     * edited it first, the fields this edit didn't touch are taken from the server's
+     * copy, the ones it did are re-applied on top, and the write is retried against
+     * the new version. If the write fails the optimistic row is dropped, so screens
+     * reload what the server has.
+     */
+    public void updateDetails(Driver base, String firstName, String lastName, String dateOfBirth,
+                              EditCallback callback) {
+        String email = base.getEmail();
+        // On top of whatever is cached now, which may be newer than base, e.g. a new picture
+        Driver current = cache.get(email);
+        Driver edited = (current != null ? current : base).withDetails(firstName, lastName, dateOfBirth);
+        generation.incrementAndGet(); // Loads already in flight must not overwrite the edit
+        cache.put(email, edited);
+        notifyChanged(email);
+
+        DbExecutor.essential(() -> {
+            Driver expected = base;
+            Driver pending = edited;
+            boolean merged = false;
+            try {
+                for (int attempt = 0; attempt < MAX_EDIT_ATTEMPTS; attempt++) {
+                    if (driverDao.updateDetails(email, pending.getFirstName(), pending.getLastName(),
+                            pending.getDateOfBirth(), expected.getVersion())) {
+                        // Unless a newer edit has replaced it in the meantime
+                        cache.replace(email, pending, pending.withVersion(expected.getVersion() + 1));
+                        callback.onEditFinished(email, merged, null);
+                        return;
+                    }
+
+                    Driver server = driverDao.findByEmail(email);
+                    if (server == null) {
+                        throw new SQLException("No driver with email " + email);
+                    }
+                    Driver reconciled = server.withDetails(
+                            pick(base.getFirstName(), edited.getFirstName(), server.getFirstName()),
+                            pick(base.getLastName(), edited.getLastName(), server.getLastName()),
+                            pick(base.getDateOfBirth(), edited.getDateOfBirth(), server.getDateOfBirth()));
+                    if (cache.replace(email, pending, reconciled)) {
+                        notifyChanged(email);
+                    }
+                    expected = server;
+                    pending = reconciled;
+                    merged = true;
+                }
+                throw new SQLException("Profile is being edited elsewhere, please try again");
+            } catch (SQLException e) {
+                e.printStackTrace();
+                invalidate(email);
+                callback.onEditFinished(email, merged, e);
+            }
+        });
+    }
+
+    // Our value for a field we changed, otherwise whatever the server has now
+    private static String pick(String base, String ours, String server) {
+        return Objects.equals(base, ours) ? server : ours;
+    }
+
+    private void notifyChanged(String email) {
+        for (Observer observer : observers) {
+            observer.onProfileChanged(email);
+        }
+    }
+
+    public void addObserver(Observer observer) {
+        observers.addIfAbsent(observer);
+    }
+
+    public void removeObserver(Observer observer) {
+        observers.remove(observer);
+    }
+}
@@ -1,8 +1,11 @@
 package com.example.signme;
 
 import android.app.DatePickerDialog;
+import android.content.Context;
 import android.content.Intent;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.widget.Button;
 import android.widget.DatePicker;
 import android.widget.EditText;
@@ -10,13 +13,9 @@ import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.Calendar;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 
 public class EditProfileActivity extends AppCompatActivity {
 
@@ -25,17 +24,15 @@ public class EditProfileActivity extends AppCompatActivity {
     private EditText dobEditText;
     private Button saveChangesButton;
 
-    private ConnectionClass connectionClass;
-    private Connection con;
     private String email;
+    // The row the form was filled from; edits are written against its version
+    private Driver loadedDriver;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_edit_profile);
 
-        connectionClass = new ConnectionClass();
-
         firstNameEditText = findViewById(R.id.firstNameEditText);
         lastNameEditText = findViewById(R.id.lastNameEditText);
         dobEditText = findViewById(R.id.dobEditText);
@@ -72,85 +69,52 @@ public class EditProfileActivity extends AppCompatActivity {
     }
 
     private void fetchUserData() {
-        ExecutorService executorService = Executors.newSingleThreadExecutor();
-        executorService.execute(() -> {
-            try {
-                con = connectionClass.CONN();
-                if (con == null) {
-                    runOnUiThread(() -> Toast.makeText(EditProfileActivity.this, "Error in connection with MySQL server", Toast.LENGTH_SHORT).show());
-                    return;
-                }
-
-                String query = "SELECT FIRST_NAME, LAST_NAME, DATE_OF_BIRTH FROM driver WHERE EMAIL = ?";
-                PreparedStatement stmt = con.prepareStatement(query);
-                stmt.setString(1, email);
-
-                ResultSet rs = stmt.executeQuery();
-                if (rs.next()) {
-                    String firstName = rs.getString("FIRST_NAME");
-                    String lastName = rs.getString("LAST_NAME");
-                    String dob = rs.getString("DATE_OF_BIRTH");
-
-                    runOnUiThread(() -> {
-                        firstNameEditText.setText(firstName);
-                        lastNameEditText.setText(lastName);
-                        dobEditText.setText(dob);
-                    });
+        try {
+            DbExecutor.interactive(() -> {
+                try {
+                    Driver driver = DriverProfileStore.getInstance().get(email);
+                    if (driver != null) {
+                        runOnUiThread(() -> {
+                            loadedDriver = driver;
+                            firstNameEditText.setText(driver.getFirstName());
+                            lastNameEditText.setText(driver.getLastName());
+                            dobEditText.setText(driver.getDateOfBirth());
+                        });
+                    }
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                    runOnUiThread(() -> Toast.makeText(EditProfileActivity.this, "SQL Exception: " + e.getMessage(), Toast.LENGTH_SHORT).show());
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    runOnUiThread(() -> Toast.makeText(EditProfileActivity.this, "Exception: " + e.getMessage(), Toast.LENGTH_SHORT).show());
                 }
-
-                rs.close();
-                stmt.close();
-                con.close();
-            } catch (SQLException e) {
-                e.printStackTrace();
-                runOnUiThread(() -> Toast.makeText(EditProfileActivity.this, "SQL Exception: " + e.getMessage(), Toast.LENGTH_SHORT).show());
-            } catch (Exception e) {
-                e.printStackTrace();
-                runOnUiThread(() -> Toast.makeText(EditProfileActivity.this, "Exception: " + e.getMessage(), Toast.LENGTH_SHORT).show());
-            }
-        });
+            });
+        } catch (RejectedExecutionException e) {
+            Toast.makeText(EditProfileActivity.this, "Exception: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+        }
     }
 
     private void saveChanges() {
+        if (loadedDriver == null) {
+            Toast.makeText(this, "Profile is still loading", Toast.LENGTH_SHORT).show();
+            return;
+        }
         String firstName = firstNameEditText.getText().toString().trim();
         String lastName = lastNameEditText.getText().toString().trim();
         String dob = dobEditText.getText().toString().trim();
 
-        ExecutorService executorService = Executors.newSingleThreadExecutor();
-        executorService.execute(() -> {
-            try {
-                con = connectionClass.CONN();
-                if (con == null) {
-                    runOnUiThread(() -> Toast.makeText(EditProfileActivity.this, "Error in connection with MySQL server", Toast.LENGTH_SHORT).show());
-                    return;
-                }
-
-                String query = "UPDATE driver SET FIRST_NAME = ?, LAST_NAME = ?, DATE_OF_BIRTH = ? WHERE EMAIL = ?";
-                PreparedStatement stmt = con.prepareStatement(query);
-                stmt.setString(1, firstName);
-                stmt.setString(2, lastName);
-                stmt.setString(3, dob);
-                stmt.setString(4, email);
-
-                int rowsUpdated = stmt.executeUpdate();
-                if (rowsUpdated > 0) {
-                    runOnUiThread(() -> {
-                        Toast.makeText(EditProfileActivity.this, "Profile updated successfully", Toast.LENGTH_SHORT).show();
-                        finish();
-                    });
-                } else {
-                    runOnUiThread(() -> Toast.makeText(EditProfileActivity.this, "Failed to update profile", Toast.LENGTH_SHORT).show());
-                }
-
-                stmt.close();
-                con.close();
-            } catch (SQLException e) {
-                e.printStackTrace();
-                runOnUiThread(() -> Toast.makeText(EditProfileActivity.this, "SQL Exception: " + e.getMessage(), Toast.LENGTH_SHORT).show());
-            } catch (Exception e) {
-                e.printStackTrace();
-                runOnUiThread(() -> Toast.makeText(EditProfileActivity.this, "Exception: " + e.getMessage(), Toast.LENGTH_SHORT).show());
-            }
-        });
+        // Shown everywhere at once and written in the background; this screen can go now
+        Context appContext = getApplicationContext();
+        Handler mainHandler = new Handler(Looper.getMainLooper());
+        DriverProfileStore.getInstance().updateDetails(loadedDriver, firstName, lastName, dob,
+                (changedEmail, merged, error) -> mainHandler.post(() -> {
+                    if (error != null) {
+                        Toast.makeText(appContext, "Failed to update profile: " + error.getMessage(), Toast.LENGTH_SHORT).show();
+                    } else if (merged) {
+                        Toast.makeText(appContext, "Profile updated, merged with changes made on another device", Toast.LENGTH_SHORT).show();
+                    }
+                }));
+        Toast.makeText(this, "Profile updated successfully", Toast.LENGTH_SHORT).show();
+        finish();
     }
 }
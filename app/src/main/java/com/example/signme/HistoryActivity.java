@@ -1,32 +1,46 @@
 package com.example.signme;
 
-import android.graphics.Typeface;
 import android.os.Bundle;
 import android.view.Menu;
 import android.view.MenuInflater;
 import android.view.MenuItem;
-import android.widget.LinearLayout;
+import android.view.View;
+import android.widget.ProgressBar;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import androidx.annotation.NonNull;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.widget.SearchView;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
+import java.io.File;
+import java.io.IOException;
 import java.sql.SQLException;
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
-import java.util.Date;
-import java.util.Locale;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.ArrayList;
+import java.util.List;
 
 public class HistoryActivity extends AppCompatActivity {
 
-    private LinearLayout historyContainer;
-    private ConnectionClass connectionClass;
-    private ExecutorService executorService;
+    // Start loading the next page when the user scrolls within this many rows of the end
+    private static final int LOAD_MORE_THRESHOLD_ROWS = 8;
+
+    private static final int SEARCH_RESULT_LIMIT = 100;
+
+    private HistoryAdapter historyAdapter;
+    private ProgressBar exportProgress;
+    private SessionHistoryMirror sessionMirror;
+
+    // Paging state, only touched on the UI thread
+    private List<Session> shownSessions = new ArrayList<>();
+    private List<HistoryAdapter.Item> shownItems = new ArrayList<>();
+    private String searchQuery = "";
+    private boolean loadingMore;
+    private boolean reachedEnd;
+
+    private final QueryLoader queryLoader = new QueryLoader(this);
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -35,9 +49,25 @@ public class HistoryActivity extends AppCompatActivity {
 
         // Initialize views
         TextView headingText = findViewById(R.id.headingText);
-        historyContainer = findViewById(R.id.historyContainer);
-        connectionClass = new ConnectionClass();
-        executorService = Executors.newSingleThreadExecutor();
+        exportProgress = findViewById(R.id.exportProgress);
+        RecyclerView historyRecyclerView = findViewById(R.id.historyRecyclerView);
+        LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        historyAdapter = new HistoryAdapter();
+        historyRecyclerView.setLayoutManager(layoutManager);
+        historyRecyclerView.setAdapter(historyAdapter);
+        historyRecyclerView.addItemDecoration(new StickyHeaderDecoration(historyAdapter));
+        sessionMirror = new SessionHistoryMirror(this);
+
+        // Load older sessions as the user nears the bottom of what's shown
+        historyRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                if (dy > 0 && layoutManager.findLastVisibleItemPosition()
+                        >= historyAdapter.getItemCount() - LOAD_MORE_THRESHOLD_ROWS) {
+                    loadMoreSessions();
+                }
+            }
+        });
 
         // Set heading text
         headingText.setText("History");
@@ -50,6 +80,24 @@ public class HistoryActivity extends AppCompatActivity {
     public boolean onCreateOptionsMenu(Menu menu) {
         MenuInflater inflater = getMenuInflater();
         inflater.inflate(R.menu.menu_history, menu);
+
+        // Search runs against the on-device index as the user types
+        SearchView searchView = (SearchView) menu.findItem(R.id.menu_search).getActionView();
+        searchView.setQueryHint("Search by place or date");
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                searchSessions(query);
+                searchView.clearFocus();
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String newText) {
+                searchSessions(newText);
+                return true;
+            }
+        });
         return true;
     }
 
@@ -58,14 +106,21 @@ public class HistoryActivity extends AppCompatActivity {
         if (item.getItemId() == R.id.menu_refresh) {
             refreshPage();
             return true;
+        } else if (item.getItemId() == R.id.menu_statistics) {
+            showStatistics();
+            return true;
+        } else if (item.getItemId() == R.id.menu_export_csv) {
+            exportHistory(SessionExporter.Format.CSV);
+            return true;
+        } else if (item.getItemId() == R.id.menu_export_binary) {
+            exportHistory(SessionExporter.Format.BINARY);
+            return true;
         }
         return super.onOptionsItemSelected(item);
     }
 
     private void refreshPage() {
-        // Clear existing data
-        historyContainer.removeAllViews();
-        // Fetch session data again
+        // Only sessions newer than the last sync are fetched again
         fetchSessionData();
     }
 
@@ -77,219 +132,214 @@ public class HistoryActivity extends AppCompatActivity {
         }
         final String trimmedEmail = email.trim();  // Trim any leading or trailing whitespace
 
-        executorService.execute(() -> {
-            Connection con = null;
-            PreparedStatement stmt = null;
-            ResultSet rs = null;
+        // A refresh supersedes both a fetch and a page load that are still running
+        queryLoader.cancel("loadMore");
+        loadingMore = false;
+        queryLoader.load("history", delivery -> {
+            // Show the newest page we already have on the device straight away
+            List<Session> mirrored = sessionMirror.loadPage(trimmedEmail, null);
+            if (!mirrored.isEmpty()) {
+                List<HistoryAdapter.Item> items = HistoryAdapter.buildItems(mirrored);
+                delivery.post(() -> showSessions(mirrored, items, mirrored.size()));
+            }
 
             try {
-                con = connectionClass.CONN();
-                if (con == null) {
-                    runOnUiThread(() -> showToast("Failed to connect to database"));
-                    return;
+                int changed = sessionMirror.sync(trimmedEmail);
+                if (changed > 0) {
+                    List<Session> sessions = sessionMirror.loadPage(trimmedEmail, null);
+                    List<HistoryAdapter.Item> items = HistoryAdapter.buildItems(sessions);
+                    delivery.post(() -> showSessions(sessions, items, sessions.size()));
+                } else if (mirrored.isEmpty()) {
+                    delivery.post(() -> showToast("No sessions found for this email"));
                 }
-
-                // Database connection successful message
-                runOnUiThread(() -> showToast("Database connection successful"));
-
-                // Get today's and yesterday's dates
-                SimpleDateFormat dateFormat = new SimpleDateFormat("dd-MM-yyyy", Locale.getDefault());
-                Calendar calendar = Calendar.getInstance();
-                String today = dateFormat.format(calendar.getTime());
-
-                calendar.add(Calendar.DAY_OF_YEAR, -1);
-                String yesterday = dateFormat.format(calendar.getTime());
-
-                // Query to fetch session data
-                String query = "SELECT START_LOCATION, DESTINATION, SESSION_START_TIME, SESSION_END_TIME " +
-                        "FROM session " +
-                        "WHERE EMAIL = ? " +
-                        "ORDER BY SESSION_START_TIME DESC";
-
-                stmt = con.prepareStatement(query);
-                stmt.setString(1, trimmedEmail);
-
-                rs = stmt.executeQuery();
-
-                boolean foundSessions = false;
-                while (rs.next()) {
-                    foundSessions = true;
-                    String startLocation = rs.getString("START_LOCATION");
-                    String destination = rs.getString("DESTINATION");
-                    String sessionStartTime = rs.getString("SESSION_START_TIME");
-                    String sessionEndTime = rs.getString("SESSION_END_TIME");
-
-                    // Determine session date
-                    String sessionDate = sessionStartTime.substring(0, 10); // Extract "dd-MM-yyyy" from timestamp
-
-                    // Add session to the appropriate section
-                    runOnUiThread(() -> addSession(sessionDate, startLocation, destination, sessionStartTime, sessionEndTime));
-                }
-
-                if (!foundSessions) {
-                    runOnUiThread(() -> showToast("No sessions found for this email"));
+                if (!sessionMirror.isHistoryComplete(trimmedEmail)) {
+                    delivery.post(() -> backfillHistory(trimmedEmail));
                 }
-
             } catch (SQLException e) {
                 e.printStackTrace();
-                runOnUiThread(() -> showToast("SQL Exception: " + e.getMessage()));
+                delivery.post(() -> showToast("SQL Exception: " + e.getMessage()));
             } catch (Exception e) {
                 e.printStackTrace();
-                runOnUiThread(() -> showToast("Exception: " + e.getMessage()));
-            } finally {
-                try {
-                    if (rs != null) rs.close();
-                    if (stmt != null) stmt.close();
-                    if (con != null) con.close();
-                } catch (SQLException e) {
-                    e.printStackTrace();
+                delivery.post(() -> showToast("Exception: " + e.getMessage()));
+            }
+        }, e -> showToast("Exception: " + e.getMessage()));
+    }
+
+    private void loadMoreSessions() {
+        if (loadingMore || reachedEnd || shownSessions.isEmpty() || !searchQuery.isEmpty()) {
+            return;
+        }
+        loadingMore = true;
+        final String email = getIntent().getStringExtra("email").trim();
+        final List<Session> shown = shownSessions;
+        final String afterSessionId = shown.get(shown.size() - 1).getSessionId();
+
+        queryLoader.load("loadMore", delivery -> {
+            try {
+                List<Session> page = sessionMirror.loadPage(email, afterSessionId);
+                if (page.size() < sessionMirror.getPageSize() && sessionMirror.fetchOlder(email) > 0) {
+                    // Ran out of mirrored history, page the next batch in from the server
+                    page = sessionMirror.loadPage(email, afterSessionId);
                 }
-                executorService.shutdown();
+                List<Session> sessions = new ArrayList<>(shown);
+                sessions.addAll(page);
+                List<HistoryAdapter.Item> items = HistoryAdapter.buildItems(sessions);
+                int pageSize = page.size();
+                delivery.post(() -> {
+                    loadingMore = false;
+                    showSessions(sessions, items, pageSize);
+                });
+            } catch (SQLException e) {
+                e.printStackTrace();
+                delivery.post(() -> {
+                    loadingMore = false;
+                    showToast("SQL Exception: " + e.getMessage());
+                });
             }
+        }, e -> {
+            loadingMore = false;
+            showToast("Exception: " + e.getMessage());
         });
     }
 
-    private void addSession(String sessionDate, String startLocation, String destination, String startTime, String endTime) {
-        // Create or find the appropriate section view
-        LinearLayout sectionLayout = findOrCreateSection(sessionDate);
-
-        // Create session view
-        LinearLayout sessionLayout = new LinearLayout(this);
-        sessionLayout.setOrientation(LinearLayout.VERTICAL);
-        sessionLayout.setBackground(getResources().getDrawable(R.drawable.rounded_rectangle));
-        sessionLayout.setPadding(16, 16, 16, 16);
-        LinearLayout.LayoutParams layoutParams = new LinearLayout.LayoutParams(
-                LinearLayout.LayoutParams.MATCH_PARENT,
-                LinearLayout.LayoutParams.WRAP_CONTENT);
-        layoutParams.setMargins(0, 0, 0, 16);
-        sessionLayout.setLayoutParams(layoutParams);
-
-        // Starting Point - Destination (Subheading)
-        TextView locationText = new TextView(this);
-        locationText.setText(startLocation + " - " + destination);
-        locationText.setTextColor(getResources().getColor(android.R.color.white));
-        locationText.setTextSize(20);
-        locationText.setTypeface(null, Typeface.BOLD);
-        sessionLayout.addView(locationText);
-
-        // Drive duration
-        TextView durationText = new TextView(this);
-        durationText.setText(calculateDuration(startTime, endTime));
-        durationText.setTextColor(getResources().getColor(android.R.color.white));
-        durationText.setTypeface(null, Typeface.ITALIC);
-        sessionLayout.addView(durationText);
-
-        // Session Start Time - End Time
-        TextView timeText = new TextView(this);
-        timeText.setText(formatTime(startTime) + " - " + formatTime(endTime));
-        timeText.setTextColor(getResources().getColor(android.R.color.white));
-        sessionLayout.addView(timeText);
-
-        // Add session view to the section
-        sectionLayout.addView(sessionLayout);
+    // Pages the rest of the driver's history onto the device so search covers all of it,
+    // then re-runs a search the user typed in the meantime
+    private void backfillHistory(String email) {
+        if (queryLoader.isLoading("backfill")) {
+            return;
+        }
+        queryLoader.load("backfill", delivery -> {
+            try {
+                if (sessionMirror.backfill(email) > 0) {
+                    delivery.post(() -> {
+                        reachedEnd = false; // More mirrored rows to scroll into
+                        if (!searchQuery.isEmpty()) {
+                            searchSessions(searchQuery);
+                        }
+                    });
+                }
+            } catch (SQLException e) {
+                e.printStackTrace(); // Picks up where it stopped on the next refresh
+            }
+        });
     }
 
-    private LinearLayout findOrCreateSection(String sessionDate) {
-        // Check if the section already exists
-        LinearLayout sectionLayout = findSectionByDate(sessionDate);
-
-        if (sectionLayout == null) {
-            // Create a new section for the date
-            sectionLayout = new LinearLayout(this);
-            sectionLayout.setOrientation(LinearLayout.VERTICAL);
-            sectionLayout.setPadding(16, 16, 16, 16);
-            LinearLayout.LayoutParams layoutParams = new LinearLayout.LayoutParams(
-                    LinearLayout.LayoutParams.MATCH_PARENT,
-                    LinearLayout.LayoutParams.WRAP_CONTENT);
-            layoutParams.setMargins(0, 32, 0, 0); // Add margin between sections
-            sectionLayout.setLayoutParams(layoutParams);
-
-            // Date heading
-            TextView dateHeading = new TextView(this);
-            dateHeading.setText(formatSectionDate(sessionDate));
-            dateHeading.setTextColor(getResources().getColor(android.R.color.white));
-            dateHeading.setTextSize(18);
-            dateHeading.setTypeface(null, Typeface.BOLD);
-            sectionLayout.addView(dateHeading);
-
-            // Add the section to the history container
-            historyContainer.addView(sectionLayout);
+    private void searchSessions(String query) {
+        searchQuery = query.trim();
+        if (searchQuery.isEmpty()) {
+            // Back to the history the user had scrolled through
+            queryLoader.cancel("search");
+            historyAdapter.submitList(shownItems);
+            return;
         }
-
-        return sectionLayout;
+        final String email = getIntent().getStringExtra("email").trim();
+        final String currentQuery = searchQuery;
+
+        // Each keystroke supersedes the search before it
+        queryLoader.load("search", delivery -> {
+            List<Session> results = sessionMirror.search(email, currentQuery, SEARCH_RESULT_LIMIT);
+            List<HistoryAdapter.Item> items = HistoryAdapter.buildItems(results);
+            delivery.post(() -> {
+                if (currentQuery.equals(searchQuery)) {
+                    historyAdapter.submitList(items);
+                }
+            });
+        });
     }
 
-    private LinearLayout findSectionByDate(String sessionDate) {
-        // Search for existing section with the given date
-        for (int i = 0; i < historyContainer.getChildCount(); i++) {
-            LinearLayout child = (LinearLayout) historyContainer.getChildAt(i);
-            if (child.getChildCount() > 0) {
-                TextView dateHeading = (TextView) child.getChildAt(0);
-                if (dateHeading.getText().toString().equals(formatSectionDate(sessionDate))) {
-                    return child;
-                }
+    private void showStatistics() {
+        final String email = getIntent().getStringExtra("email").trim();
+        queryLoader.load("statistics", delivery -> {
+            try {
+                TripStatistics statistics = TripStatisticsStore.getInstance().get(email);
+                delivery.post(() -> new AlertDialog.Builder(this)
+                        .setTitle("Statistics")
+                        .setMessage(formatStatistics(statistics))
+                        .setPositiveButton("OK", null)
+                        .show());
+            } catch (SQLException e) {
+                e.printStackTrace();
+                delivery.post(() -> showToast("SQL Exception: " + e.getMessage()));
             }
-        }
-        return null;
+        }, e -> showToast("Exception: " + e.getMessage()));
     }
 
-    private String formatSectionDate(String sessionDate) {
-        // Format the session date for section heading
-        if (sessionDate.equals(getTodayDate())) {
-            return "Today";
-        } else if (sessionDate.equals(getYesterdayDate())) {
-            return "Yesterday";
-        } else {
-            return sessionDate;
+    private static String formatStatistics(TripStatistics statistics) {
+        StringBuilder text = new StringBuilder();
+        text.append("Trips: ").append(statistics.getTotalTrips())
+                .append("\nTotal driving time: ").append(formatDuration(statistics.getTotalDrivingSeconds()));
+        if (statistics.getFinishedTrips() > 0) {
+            text.append("\nAverage trip: ")
+                    .append(formatDuration(statistics.getTotalDrivingSeconds() / statistics.getFinishedTrips()));
+        }
+
+        text.append("\n\nLast ").append(TripStatisticsDao.RECENT_DAYS).append(" days");
+        for (TripStatistics.Period day : statistics.getDays()) {
+            text.append("\n").append(day.getLabel()).append(": ").append(day.getTrips()).append(" trips, ")
+                    .append(formatDuration(day.getDrivingSeconds()));
+        }
+
+        text.append("\n\nLast ").append(TripStatisticsDao.RECENT_WEEKS).append(" weeks");
+        for (TripStatistics.Period week : statistics.getWeeks()) {
+            text.append("\nWeek of ").append(week.getLabel()).append(": ").append(week.getTrips()).append(" trips, ")
+                    .append(formatDuration(week.getDrivingSeconds()));
         }
-    }
 
-    private String getTodayDate() {
-        // Get today's date in "dd-MM-yyyy" format
-        SimpleDateFormat dateFormat = new SimpleDateFormat("dd-MM-yyyy", Locale.getDefault());
-        return dateFormat.format(new Date());
+        text.append("\n\nTop routes");
+        for (TripStatistics.Route route : statistics.getRoutes()) {
+            text.append("\n").append(route.getStartLocation()).append(" - ").append(route.getDestination())
+                    .append(": ").append(route.getTrips()).append(" trips, avg ")
+                    .append(formatDuration(route.getAverageSeconds())).append(", max ")
+                    .append(formatDuration(route.getMaxSeconds()));
+        }
+        return text.toString();
     }
 
-    private String getYesterdayDate() {
-        // Get yesterday's date in "dd-MM-yyyy" format
-        Calendar calendar = Calendar.getInstance();
-        calendar.add(Calendar.DAY_OF_YEAR, -1);
-        SimpleDateFormat dateFormat = new SimpleDateFormat("dd-MM-yyyy", Locale.getDefault());
-        return dateFormat.format(calendar.getTime());
+    private static String formatDuration(long seconds) {
+        long minutes = seconds / 60;
+        return minutes >= 60 ? (minutes / 60) + " h " + (minutes % 60) + " min" : minutes + " min";
     }
 
-    private String calculateDuration(String startTime, String endTime) {
-        // Calculate duration between start time and end time
-        SimpleDateFormat format = new SimpleDateFormat("dd-MM-yyyy HH:mm:ss", Locale.getDefault());
-        try {
-            Date start = format.parse(startTime);
-            Date end = format.parse(endTime);
-            long duration = end.getTime() - start.getTime();
-            long diffInMinutes = duration / (1000 * 60);
-            long hours = diffInMinutes / 60;
-            long minutes = diffInMinutes % 60;
-            String durationString = "";
-            if (hours > 0) {
-                durationString += hours + " hour ";
-            }
-            durationString += minutes + " minutes drive";
-            return durationString;
-        } catch (java.text.ParseException e) {
-            e.printStackTrace();
-            return "";
+    private void exportHistory(SessionExporter.Format format) {
+        if (queryLoader.isLoading("export")) {
+            showToast("An export is already running");
+            return;
         }
+        final String email = getIntent().getStringExtra("email").trim();
+        exportProgress.setProgress(0);
+        exportProgress.setVisibility(View.VISIBLE);
+
+        queryLoader.load("export", delivery -> {
+            try {
+                File file = new SessionExporter(this).export(email, format, (written, total) ->
+                        delivery.post(() -> {
+                            exportProgress.setMax(Math.max(total, 1));
+                            exportProgress.setProgress(written);
+                        }));
+                delivery.post(() -> {
+                    exportProgress.setVisibility(View.GONE);
+                    showToast("History exported to " + file.getAbsolutePath());
+                });
+            } catch (SQLException | IOException e) {
+                e.printStackTrace();
+                delivery.post(() -> {
+                    exportProgress.setVisibility(View.GONE);
+                    showToast("Export failed: " + e.getMessage());
+                });
+            }
+        }, e -> {
+            exportProgress.setVisibility(View.GONE);
+            showToast("Export failed: " + e.getMessage());
+        });
     }
 
-    private String formatTime(String time) {
-        // Format time from "dd-MM-yyyy HH:mm:ss" to "HH:mm"
-        try {
-            SimpleDateFormat inputFormat = new SimpleDateFormat("dd-MM-yyyy HH:mm:ss", Locale.getDefault());
-            SimpleDateFormat outputFormat = new SimpleDateFormat("HH:mm", Locale.getDefault());
-            Date date = inputFormat.parse(time);
-            return outputFormat.format(date);
-        } catch (java.text.ParseException e) {
-            e.printStackTrace();
-            return "";
+    // Hands rows built off the main thread to the adapter, which diffs them against what's shown
+    private void showSessions(List<Session> sessions, List<HistoryAdapter.Item> items, int lastPageSize) {
+        shownSessions = sessions;
+        shownItems = items;
+        reachedEnd = lastPageSize < sessionMirror.getPageSize();
+        if (searchQuery.isEmpty()) {
+            historyAdapter.submitList(items);
         }
     }
 
@@ -297,13 +347,4 @@ public class HistoryActivity extends AppCompatActivity {
         // Display toast message
         Toast.makeText(this, message, Toast.LENGTH_SHORT).show();
     }
-
-    @Override
-    protected void onDestroy() {
-        super.onDestroy();
-        // Shutdown executorService when activity is destroyed
-        if (executorService != null && !executorService.isShutdown()) {
-            executorService.shutdown();
-        }
-    }
 }
@@ -0,0 +1,209 @@
+package com.example.signme;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.sql.Timestamp;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TimeZone;
+
+/**
+ * Session history grouped under date headings.
+ *
+ * Rows are built once, off the main thread, by buildItems() from typed timestamps, so
+ * nothing is parsed and binding a recycled view is just a few setText() calls.
+ * Refreshes go through DiffUtil so only changed rows are rebound.
+ */
+public class HistoryAdapter extends ListAdapter<HistoryAdapter.Item, RecyclerView.ViewHolder> {
+
+    public static final int TYPE_HEADER = 0;
+    public static final int TYPE_SESSION = 1;
+
+    private static final long DAY_MS = 24 * 60 * 60 * 1000;
+
+    public HistoryAdapter() {
+        super(DIFF_CALLBACK);
+    }
+
+    /**
+     * Groups sessions by day and formats everything the rows display. Call it from a
+     * background thread.
+     */
+    public static List<Item> buildItems(List<Session> sessions) {
+        SimpleDateFormat dayFormat = new SimpleDateFormat("dd-MM-yyyy", Locale.getDefault());
+        SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm", Locale.getDefault());
+        TimeZone timeZone = TimeZone.getDefault();
+
+        long today = localDay(timeZone, System.currentTimeMillis());
+        long yesterday = today - 1;
+
+        // Local day number -> its rows, in the order the days first appear
+        Map<Long, List<Item>> sections = new LinkedHashMap<>();
+        Map<Long, String> labels = new HashMap<>();
+        for (Session session : sessions) {
+            long start = session.getStartTime().getTime();
+            long day = localDay(timeZone, start);
+            List<Item> rows = sections.get(day);
+            if (rows == null) {
+                rows = new ArrayList<>();
+                sections.put(day, rows);
+                labels.put(day, day == today ? "Today"
+                        : day == yesterday ? "Yesterday"
+                        : dayFormat.format(session.getStartTime()));
+            }
+
+            Timestamp end = session.getEndTime();
+            rows.add(new Item(TYPE_SESSION, session.getSessionId(), labels.get(day),
+                    session.getStartLocation() + " - " + session.getDestination(),
+                    end == null ? "" : formatDuration(end.getTime() - start),
+                    timeFormat.format(session.getStartTime()) + " - " + (end == null ? "" : timeFormat.format(end))));
+        }
+
+        List<Item> items = new ArrayList<>();
+        for (Map.Entry<Long, List<Item>> section : sections.entrySet()) {
+            String label = labels.get(section.getKey());
+            items.add(new Item(TYPE_HEADER, "header:" + section.getKey(), label, label, null, null));
+            items.addAll(section.getValue());
+        }
+        return items;
+    }
+
+    // Label of the section the item at position belongs to, for the sticky header
+    public String getSectionLabel(int position) {
+        return getItem(position).sectionLabel;
+    }
+
+    @Override
+    public int getItemViewType(int position) {
+        return getItem(position).type;
+    }
+
+    @NonNull
+    @Override
+    public RecyclerView.ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        LayoutInflater inflater = LayoutInflater.from(parent.getContext());
+        if (viewType == TYPE_HEADER) {
+            return new HeaderHolder(inflater.inflate(R.layout.item_history_header, parent, false));
+        }
+        return new SessionHolder(inflater.inflate(R.layout.item_history_session, parent, false));
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position) {
+        Item item = getItem(position);
+        if (holder instanceof HeaderHolder) {
+            ((HeaderHolder) holder).dateHeading.setText(item.title);
+        } else {
+            SessionHolder sessionHolder = (SessionHolder) holder;
+            sessionHolder.locationText.setText(item.title);
+            sessionHolder.durationText.setText(item.duration);
+            sessionHolder.timeText.setText(item.timeRange);
+        }
+    }
+
+    // Days since the epoch in the device's time zone
+    private static long localDay(TimeZone timeZone, long millis) {
+        return (millis + timeZone.getOffset(millis)) / DAY_MS;
+    }
+
+    private static String formatDuration(long durationMs) {
+        long diffInMinutes = durationMs / (1000 * 60);
+        long hours = diffInMinutes / 60;
+        long minutes = diffInMinutes % 60;
+        String durationString = "";
+        if (hours > 0) {
+            durationString += hours + " hour ";
+        }
+        durationString += minutes + " minutes drive";
+        return durationString;
+    }
+
+    // One row of the list: either a date heading or a session, with its display text ready
+    public static class Item {
+        final int type;
+        final String key;
+        final String sectionLabel;
+        final String title;
+        final String duration;
+        final String timeRange;
+
+        Item(int type, String key, String sectionLabel, String title, String duration, String timeRange) {
+            this.type = type;
+            this.key = key;
+            this.sectionLabel = sectionLabel;
+            this.title = title;
+            this.duration = duration;
+            this.timeRange = timeRange;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Item)) {
+                return false;
+            }
+            Item other = (Item) o;
+            return type == other.type
+                    && key.equals(other.key)
+                    && sectionLabel.equals(other.sectionLabel)
+                    && Objects.equals(title, other.title)
+                    && Objects.equals(duration, other.duration)
+                    && Objects.equals(timeRange, other.timeRange);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(type, key, sectionLabel, title, duration, timeRange);
+        }
+    }
+
+    private static final DiffUtil.ItemCallback<Item> DIFF_CALLBACK = new DiffUtil.ItemCallback<Item>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Item oldItem, @NonNull Item newItem) {
+            return oldItem.key.equals(newItem.key);
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Item oldItem, @NonNull Item newItem) {
+            return oldItem.equals(newItem);
+        }
+    };
+
+    static class HeaderHolder extends RecyclerView.ViewHolder {
+        final TextView dateHeading;
+
+        HeaderHolder(View itemView) {
+            super(itemView);
+            dateHeading = itemView.findViewById(R.id.dateHeading);
+        }
+    }
+
+    static class SessionHolder extends RecyclerView.ViewHolder {
+        final TextView locationText;
+        final TextView durationText;
+        final TextView timeText;
+
+        SessionHolder(View itemView) {
+            super(itemView);
+            locationText = itemView.findViewById(R.id.locationText);
+            durationText = itemView.findViewById(R.id.durationText);
+            timeText = itemView.findViewById(R.id.timeText);
+        }
+    }
+}
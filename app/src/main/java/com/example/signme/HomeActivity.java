@@ -11,15 +11,13 @@ import android.widget.ImageButton;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 public class HomeActivity extends AppCompatActivity {
 
+    // Set when opened from a remembered login rather than the login screen
+    public static final String EXTRA_RESTORED_SESSION = "restoredSession";
+
     private TextView welcomeText;
     private Button driveButton;
     private Button profileButton;
@@ -30,6 +28,14 @@ public class HomeActivity extends AppCompatActivity {
 
     private String firstName; // To store user's first name
     private String email; // To store user's email
+    private final QueryLoader queryLoader = new QueryLoader(this);
+
+    // Refresh the greeting when the profile is edited elsewhere
+    private final DriverProfileStore.Observer profileObserver = changedEmail -> {
+        if (changedEmail.equals(email)) {
+            fetchFirstName();
+        }
+    };
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -50,43 +56,58 @@ public class HomeActivity extends AppCompatActivity {
 
         // Fetch user's first name from database
         fetchFirstName();
+        DriverProfileStore.getInstance().addObserver(profileObserver);
 
         // Set click listeners
         setupButtonListeners();
 
         // Set up logout button listener
         logoutButton.setOnClickListener(v -> showLogoutDialog());
+
+        if (getIntent().getBooleanExtra(EXTRA_RESTORED_SESSION, false)) {
+            revalidateSession();
+        }
     }
 
-    private void fetchFirstName() {
-        ExecutorService executorService = Executors.newSingleThreadExecutor();
-        executorService.execute(() -> {
-            ConnectionClass connectionClass = new ConnectionClass();
-            Connection con = connectionClass.CONN();
-            if (con == null) {
-                runOnUiThread(() -> Toast.makeText(this, "Error in connection with MySQL server", Toast.LENGTH_SHORT).show());
-                return;
+    // The remembered login got us here without the server; make sure it still accepts it
+    private void revalidateSession() {
+        queryLoader.load("revalidate", delivery -> {
+            try {
+                if (!LoginSession.getInstance(this).revalidate()) {
+                    delivery.post(() -> {
+                        Toast.makeText(this, "Your session has expired, please log in again", Toast.LENGTH_SHORT).show();
+                        logout();
+                    });
+                }
+            } catch (SQLException e) {
+                e.printStackTrace(); // Offline; keep the session and check again next launch
             }
+        });
+    }
 
-            String query = "SELECT FIRST_NAME FROM driver WHERE EMAIL = ?";
+    private void fetchFirstName() {
+        queryLoader.load("firstName", delivery -> {
             try {
-                PreparedStatement stmt = con.prepareStatement(query);
-                stmt.setString(1, email);
-                ResultSet rs = stmt.executeQuery();
-                if (rs.next()) {
-                    firstName = rs.getString("FIRST_NAME");
-                    runOnUiThread(() -> welcomeText.setText("Welcome, " + firstName));
+                Driver driver = DriverProfileStore.getInstance().get(email);
+                if (driver != null) {
+                    delivery.post(() -> {
+                        firstName = driver.getFirstName();
+                        welcomeText.setText("Welcome, " + firstName);
+                    });
                 }
-                rs.close();
-                stmt.close();
-                con.close();
             } catch (SQLException e) {
                 e.printStackTrace();
-                runOnUiThread(() -> Toast.makeText(this, "SQL Exception: " + e.getMessage(), Toast.LENGTH_SHORT).show());
+                delivery.post(() -> Toast.makeText(this, "SQL Exception: " + e.getMessage(), Toast.LENGTH_SHORT).show());
             }
         });
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        DriverProfileStore.getInstance().removeObserver(profileObserver);
+    }
+
     private void setupButtonListeners() {
         driveButton.setOnClickListener(v -> navigateToDriveActivity());
         recordButton.setOnClickListener(v -> navigateToRecordActivity());
@@ -143,9 +164,15 @@ private void navigateToRecordActivity() {
     }
 
     private void logout() {
-        Intent intent = new Intent(HomeActivity.this, MainActivity.class);
-        intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
-        startActivity(intent);
-        finish();
+        // Forgetting the session decrypts the token through the Keystore, so not here
+        DbExecutor.essential(() -> {
+            LoginSession.getInstance(this).end();
+            runOnUiThread(() -> {
+                Intent intent = new Intent(HomeActivity.this, MainActivity.class);
+                intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
+                startActivity(intent);
+                finish();
+            });
+        });
     }
 }
@@ -0,0 +1,116 @@
+package com.example.signme;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+// On-device SQLite database holding data mirrored from (or waiting to go to) MySQL
+public class LocalDatabaseHelper extends SQLiteOpenHelper {
+
+    private static final String DATABASE_NAME = "signme_local.db";
+    private static final int DATABASE_VERSION = 1;
+
+    public static final String TABLE_SESSION_MIRROR = "session_mirror";
+    public static final String TABLE_SYNC_STATE = "sync_state";
+    public static final String TABLE_PENDING_SESSION_WRITES = "pending_session_writes";
+    public static final String TABLE_SESSION_SEARCH = "session_search";
+
+    private static LocalDatabaseHelper instance;
+
+    public static synchronized LocalDatabaseHelper getInstance(Context context) {
+        if (instance == null) {
+            instance = new LocalDatabaseHelper(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private LocalDatabaseHelper(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        createSessionMirror(db);
+        createSyncState(db);
+        createPendingSessionWrites(db);
+        createSessionSearch(db);
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // Only one version so far
+    }
+
+    // Text the search index holds per mirrored session, as SQL over a session_mirror row
+    private static final String SEARCH_PLACES = "COALESCE(%1$sstart_location, '') || ' ' || COALESCE(%1$sdestination, '')";
+    private static final String SEARCH_DATE =
+            "strftime('%%d-%%m-%%Y', %1$sstart_millis / 1000, 'unixepoch', 'localtime') || ' ' || " +
+            "CASE strftime('%%m', %1$sstart_millis / 1000, 'unixepoch', 'localtime') " +
+            "WHEN '01' THEN 'January' WHEN '02' THEN 'February' WHEN '03' THEN 'March' " +
+            "WHEN '04' THEN 'April' WHEN '05' THEN 'May' WHEN '06' THEN 'June' " +
+            "WHEN '07' THEN 'July' WHEN '08' THEN 'August' WHEN '09' THEN 'September' " +
+            "WHEN '10' THEN 'October' WHEN '11' THEN 'November' ELSE 'December' END";
+
+    private static String searchPlaces(String row) {
+        return String.format(SEARCH_PLACES, row);
+    }
+
+    private static String searchDate(String row) {
+        return String.format(SEARCH_DATE, row);
+    }
+
+    // Local copy of the session table, with times as epoch millis. id is an INTEGER
+    // PRIMARY KEY, i.e. the rowid itself, so it is stable and can key the search index.
+    private static void createSessionMirror(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_SESSION_MIRROR + " (" +
+                "id INTEGER PRIMARY KEY, " +
+                "session_id TEXT NOT NULL UNIQUE, " +
+                "email TEXT NOT NULL, " +
+                "start_location TEXT, " +
+                "destination TEXT, " +
+                "vehicle_type TEXT, " +
+                "start_millis INTEGER NOT NULL, " +
+                "end_millis INTEGER)");
+        db.execSQL("CREATE INDEX idx_session_mirror_email_start ON " + TABLE_SESSION_MIRROR +
+                " (email, start_millis DESC, session_id DESC)");
+    }
+
+    // FTS4 index over the mirror's place names and start date, keyed by the mirror's
+    // id and kept current by triggers, so it updates as sessions are synced
+    private static void createSessionSearch(SQLiteDatabase db) {
+        db.execSQL("CREATE VIRTUAL TABLE " + TABLE_SESSION_SEARCH + " USING fts4(places, start_date)");
+        db.execSQL("CREATE TRIGGER session_search_after_insert AFTER INSERT ON " + TABLE_SESSION_MIRROR + " BEGIN " +
+                "INSERT INTO " + TABLE_SESSION_SEARCH + " (docid, places, start_date) " +
+                "VALUES (NEW.id, " + searchPlaces("NEW.") + ", " + searchDate("NEW.") + "); END");
+        db.execSQL("CREATE TRIGGER session_search_after_update AFTER UPDATE ON " + TABLE_SESSION_MIRROR + " BEGIN " +
+                "UPDATE " + TABLE_SESSION_SEARCH + " SET places = " + searchPlaces("NEW.") + ", " +
+                "start_date = " + searchDate("NEW.") + " WHERE docid = NEW.id; END");
+        db.execSQL("CREATE TRIGGER session_search_after_delete AFTER DELETE ON " + TABLE_SESSION_MIRROR + " BEGIN " +
+                "DELETE FROM " + TABLE_SESSION_SEARCH + " WHERE docid = OLD.id; END");
+    }
+
+    // Per driver: the server INSERTED_AT synced up to, the oldest (SESSION_START_AT,
+    // SESSION_ID) paged in, and whether paging has reached the start of their history
+    private static void createSyncState(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_SYNC_STATE + " (" +
+                "email TEXT PRIMARY KEY, " +
+                "last_inserted_millis INTEGER NOT NULL, " +
+                "oldest_start_millis INTEGER NOT NULL DEFAULT 0, " +
+                "oldest_session_id TEXT, " +
+                "history_complete INTEGER NOT NULL DEFAULT 0)");
+    }
+
+    // Sessions started on this device that haven't reached MySQL yet; see SessionWriteQueue
+    private static void createPendingSessionWrites(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_PENDING_SESSION_WRITES + " (" +
+                "session_id TEXT PRIMARY KEY, " +
+                "email TEXT NOT NULL, " +
+                "start_location TEXT, " +
+                "destination TEXT, " +
+                "vehicle_type TEXT, " +
+                "start_millis INTEGER NOT NULL, " +
+                "enqueued_at INTEGER NOT NULL, " +
+                "attempts INTEGER NOT NULL DEFAULT 0, " +
+                "next_attempt_at INTEGER NOT NULL DEFAULT 0)");
+    }
+}
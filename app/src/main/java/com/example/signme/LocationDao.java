@@ -0,0 +1,143 @@
+package com.example.signme;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Owns the location table, which interns START_LOCATION / DESTINATION names.
+ *
+ * Place names are normalized (trimmed, lower-cased) and given an integer id, and
+ * sessions reference those ids. Ids never change once assigned, so the process keeps
+ * a name -> id cache: it is filled from the whole table on first use, and after that
+ * only a name nobody has used before costs a round trip.
+ */
+public class LocationDao {
+
+    private static final String SELECT_ALL =
+            "SELECT LOCATION_ID, NORMALIZED_NAME FROM location";
+    private static final String SELECT_BY_NAMES =
+            "SELECT LOCATION_ID, NORMALIZED_NAME FROM location WHERE NORMALIZED_NAME IN ";
+    private static final String INSERT =
+            "INSERT INTO location (NAME, NORMALIZED_NAME) VALUES (?, ?) " +
+            "ON DUPLICATE KEY UPDATE LOCATION_ID = LOCATION_ID";
+
+    // Must match normalize() below
+    private static final String NORMALIZE_SQL = "LOWER(TRIM(%s))";
+
+    private static final Map<String, Integer> idsByName = new ConcurrentHashMap<>();
+    private static volatile boolean cacheLoaded;
+
+    public static String normalize(String name) {
+        return name == null ? null : name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Returns the id of every given name, keyed by normalized name, creating location
+     * rows for names seen for the first time. Runs on the caller's connection so it can
+     * share a transaction with the insert that needs the ids.
+     */
+    public Map<String, Integer> resolveIds(Connection con, Collection<String> names) throws SQLException {
+        if (!cacheLoaded) {
+            loadCache(con);
+        }
+
+        Map<String, Integer> ids = new HashMap<>();
+        Map<String, String> missing = new HashMap<>(); // normalized -> name as typed
+        for (String name : names) {
+            String normalized = normalize(name);
+            if (normalized == null || normalized.isEmpty()) {
+                continue;
+            }
+            Integer id = idsByName.get(normalized);
+            if (id != null) {
+                ids.put(normalized, id);
+            } else {
+                missing.put(normalized, name.trim());
+            }
+        }
+        if (missing.isEmpty()) {
+            return ids;
+        }
+
+        try (PreparedStatement stmt = con.prepareStatement(INSERT)) {
+            for (Map.Entry<String, String> entry : missing.entrySet()) {
+                stmt.setString(1, entry.getValue());
+                stmt.setString(2, entry.getKey());
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+
+        // Read the ids back, including ones another client inserted first. They only go
+        // into the cache via remember(), once the caller's transaction has committed.
+        List<String> keys = new ArrayList<>(missing.keySet());
+        StringBuilder query = new StringBuilder(SELECT_BY_NAMES).append('(');
+        for (int i = 0; i < keys.size(); i++) {
+            query.append(i == 0 ? "?" : ", ?");
+        }
+        query.append(')');
+        try (PreparedStatement stmt = con.prepareStatement(query.toString())) {
+            for (int i = 0; i < keys.size(); i++) {
+                stmt.setString(i + 1, keys.get(i));
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    ids.put(rs.getString(2), rs.getInt(1));
+                }
+            }
+        }
+        return ids;
+    }
+
+    // Caches ids returned by resolveIds() after the transaction that created them committed
+    public void remember(Map<String, Integer> ids) {
+        idsByName.putAll(ids);
+    }
+
+    /**
+     * Creates location rows for every name already in the session table and points the
+     * sessions at them. Safe to run again; only rows without ids are touched.
+     */
+    public static void internExisting(Connection con) throws SQLException {
+        try (Statement stmt = con.createStatement()) {
+            stmt.setQueryTimeout(0); // Whole-table statements, see SchemaMigrations.execute()
+            stmt.executeUpdate(
+                    "INSERT INTO location (NAME, NORMALIZED_NAME) " +
+                    "SELECT MIN(TRIM(name)), " + String.format(NORMALIZE_SQL, "name") + " FROM (" +
+                    "SELECT START_LOCATION AS name FROM session WHERE START_LOCATION_ID IS NULL " +
+                    "UNION SELECT DESTINATION FROM session WHERE DESTINATION_ID IS NULL) names " +
+                    "WHERE TRIM(name) <> '' " +
+                    "GROUP BY " + String.format(NORMALIZE_SQL, "name") + " " +
+                    "ON DUPLICATE KEY UPDATE LOCATION_ID = LOCATION_ID");
+            stmt.executeUpdate(
+                    "UPDATE session s JOIN location l ON l.NORMALIZED_NAME = " + String.format(NORMALIZE_SQL, "s.START_LOCATION") + " " +
+                    "SET s.START_LOCATION_ID = l.LOCATION_ID WHERE s.START_LOCATION_ID IS NULL");
+            stmt.executeUpdate(
+                    "UPDATE session s JOIN location l ON l.NORMALIZED_NAME = " + String.format(NORMALIZE_SQL, "s.DESTINATION") + " " +
+                    "SET s.DESTINATION_ID = l.LOCATION_ID WHERE s.DESTINATION_ID IS NULL");
+        }
+    }
+
+    private static synchronized void loadCache(Connection con) throws SQLException {
+        if (cacheLoaded) {
+            return;
+        }
+        try (Statement stmt = con.createStatement();
+             ResultSet rs = stmt.executeQuery(SELECT_ALL)) {
+            while (rs.next()) {
+                idsByName.put(rs.getString(2), rs.getInt(1));
+            }
+        }
+        cacheLoaded = true;
+    }
+}
@@ -0,0 +1,210 @@
+package com.example.signme;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.security.keystore.KeyGenParameterSpec;
+import android.security.keystore.KeyProperties;
+import android.util.Base64;
+import android.util.Log;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+/**
+ * Keeps a driver logged in across launches without re-checking their password.
+ *
+ * A successful login issues a random token, registers its hash in login_session with
+ * an expiry, and stores the token on the device encrypted with an Android Keystore
+ * key, which can't be exported from the device. On relaunch getEmail() answers from
+ * SharedPreferences alone, so the app can go straight to Home; revalidate() then
+ * checks the token against the server in the background, so a session revoked or
+ * expired there is still thrown out.
+ */
+public class LoginSession {
+
+    private static final String TAG = "LoginSession";
+
+    private static final long LIFETIME_MS = 30L * 24 * 60 * 60 * 1000;
+    private static final int TOKEN_BYTES = 32;
+
+    private static final String KEYSTORE = "AndroidKeyStore";
+    private static final String KEY_ALIAS = "signme_login_session";
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final int GCM_TAG_BITS = 128;
+
+    private static final String PREFS_NAME = "login_session";
+    private static final String KEY_EMAIL = "email";
+    private static final String KEY_EXPIRES_AT = "expires_at";
+    private static final String KEY_TOKEN = "token";
+    private static final String KEY_TOKEN_IV = "token_iv";
+
+    private static LoginSession instance;
+
+    private final SharedPreferences prefs;
+    private final LoginSessionDao loginSessionDao = new LoginSessionDao();
+
+    public static synchronized LoginSession getInstance(Context context) {
+        if (instance == null) {
+            instance = new LoginSession(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private LoginSession(Context context) {
+        prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    // Email of the driver logged in on this device, or null if none or it has expired
+    public String getEmail() {
+        String email = prefs.getString(KEY_EMAIL, null);
+        if (email == null || prefs.getLong(KEY_EXPIRES_AT, 0) <= System.currentTimeMillis()) {
+            return null;
+        }
+        return email;
+    }
+
+    /**
+     * Starts a session for a driver who has just logged in with their password. Blocks;
+     * call it from a DbExecutor task. If the device can't store the token securely the
+     * driver simply has to log in again next time.
+     */
+    public void start(String email) throws SQLException {
+        byte[] token = new byte[TOKEN_BYTES];
+        new SecureRandom().nextBytes(token);
+        long expiresAt = System.currentTimeMillis() + LIFETIME_MS;
+
+        byte[] iv;
+        byte[] encrypted;
+        String tokenHash;
+        try {
+            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            cipher.init(Cipher.ENCRYPT_MODE, getOrCreateKey());
+            iv = cipher.getIV();
+            encrypted = cipher.doFinal(token);
+            tokenHash = hash(token);
+        } catch (GeneralSecurityException e) {
+            Log.w(TAG, "Can't protect the session token, not remembering login: " + e.getMessage());
+            return;
+        }
+
+        loginSessionDao.insert(tokenHash, email, new Timestamp(expiresAt));
+        prefs.edit()
+                .putString(KEY_EMAIL, email)
+                .putLong(KEY_EXPIRES_AT, expiresAt)
+                .putString(KEY_TOKEN, Base64.encodeToString(encrypted, Base64.NO_WRAP))
+                .putString(KEY_TOKEN_IV, Base64.encodeToString(iv, Base64.NO_WRAP))
+                .commit();
+    }
+
+    /**
+     * Checks the stored session with the server. Returns false, and forgets the
+     * session, if the server no longer accepts it. Throws if the server can't be
+     * reached, in which case the session is kept. Blocks; call it from a DbExecutor task.
+     */
+    public boolean revalidate() throws SQLException {
+        String email = getEmail();
+        String tokenHash = readTokenHash();
+        if (email == null || tokenHash == null) {
+            clear();
+            return false;
+        }
+        if (!loginSessionDao.touch(tokenHash, email)) {
+            clear();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Logs the driver out of every other device, e.g. after a password change. Blocks;
+     * call it from a DbExecutor task.
+     */
+    public void endOtherSessions(String email) throws SQLException {
+        String tokenHash = email.equals(getEmail()) ? readTokenHash() : null;
+        loginSessionDao.deleteOthers(email, tokenHash);
+    }
+
+    /**
+     * Logs out on this device; the server row is deleted in the background. Reading the
+     * token goes through the Keystore, so this blocks too: call it from a DbExecutor task.
+     */
+    public void end() {
+        String tokenHash = readTokenHash();
+        clear();
+        if (tokenHash != null) {
+            try {
+                DbExecutor.background(() -> {
+                    try {
+                        loginSessionDao.delete(tokenHash);
+                    } catch (SQLException e) {
+                        e.printStackTrace(); // It expires on its own
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                Log.w(TAG, "Not deleting the server session: " + e.getMessage()); // It expires on its own
+            }
+        }
+    }
+
+    private void clear() {
+        prefs.edit().clear().apply(); // getEmail() sees it at once; the disk write follows
+    }
+
+    // Null if there is no token or the Keystore can no longer decrypt it
+    private String readTokenHash() {
+        String encrypted = prefs.getString(KEY_TOKEN, null);
+        String iv = prefs.getString(KEY_TOKEN_IV, null);
+        if (encrypted == null || iv == null) {
+            return null;
+        }
+        try {
+            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            cipher.init(Cipher.DECRYPT_MODE, getOrCreateKey(),
+                    new GCMParameterSpec(GCM_TAG_BITS, Base64.decode(iv, Base64.NO_WRAP)));
+            return hash(cipher.doFinal(Base64.decode(encrypted, Base64.NO_WRAP)));
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            Log.w(TAG, "Can't read the session token: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static SecretKey getOrCreateKey() throws GeneralSecurityException {
+        try {
+            KeyStore keyStore = KeyStore.getInstance(KEYSTORE);
+            keyStore.load(null);
+            if (keyStore.containsAlias(KEY_ALIAS)) {
+                return (SecretKey) keyStore.getKey(KEY_ALIAS, null);
+            }
+        } catch (IOException e) {
+            throw new GeneralSecurityException(e);
+        }
+        KeyGenerator generator = KeyGenerator.getInstance(KeyProperties.KEY_ALGORITHM_AES, KEYSTORE);
+        generator.init(new KeyGenParameterSpec.Builder(KEY_ALIAS,
+                KeyProperties.PURPOSE_ENCRYPT | KeyProperties.PURPOSE_DECRYPT)
+                .setBlockModes(KeyProperties.BLOCK_MODE_GCM)
+                .setEncryptionPaddings(KeyProperties.ENCRYPTION_PADDING_NONE)
+                .setKeySize(256)
+                .build());
+        return generator.generateKey();
+    }
+
+    private static String hash(byte[] token) throws GeneralSecurityException {
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest(token);
+        StringBuilder hex = new StringBuilder(digest.length * 2);
+        for (byte b : digest) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.signme;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+/**
+ * Owns the login_session table: one row per device a driver stays logged in on.
+ * Only the SHA-256 of each token is stored, so the table can't be used to log in.
+ */
+public class LoginSessionDao {
+
+    private static final String INSERT =
+            "INSERT INTO login_session (TOKEN_HASH, EMAIL, CREATED_AT, EXPIRES_AT, LAST_SEEN_AT) " +
+            "VALUES (?, ?, NOW(), ?, NOW())";
+    // Validates and records the visit in one round trip
+    private static final String TOUCH =
+            "UPDATE login_session SET LAST_SEEN_AT = NOW() " +
+            "WHERE TOKEN_HASH = ? AND EMAIL = ? AND EXPIRES_AT > NOW()";
+    private static final String DELETE =
+            "DELETE FROM login_session WHERE TOKEN_HASH = ?";
+    private static final String DELETE_OTHERS_FOR_EMAIL =
+            "DELETE FROM login_session WHERE EMAIL = ? AND TOKEN_HASH <> ?";
+
+    private final ConnectionClass connectionClass = new ConnectionClass();
+
+    public void insert(String tokenHash, String email, Timestamp expiresAt) throws SQLException {
+        Connection con = writeConnection();
+        try (PreparedStatement stmt = con.prepareStatement(INSERT)) {
+            stmt.setString(1, tokenHash);
+            stmt.setString(2, email);
+            stmt.setTimestamp(3, expiresAt);
+            stmt.executeUpdate();
+        } finally {
+            con.close();
+        }
+    }
+
+    // Returns false if the token has expired or been revoked
+    public boolean touch(String tokenHash, String email) throws SQLException {
+        Connection con = writeConnection();
+        try (PreparedStatement stmt = con.prepareStatement(TOUCH)) {
+            stmt.setString(1, tokenHash);
+            stmt.setString(2, email);
+            return stmt.executeUpdate() > 0;
+        } finally {
+            con.close();
+        }
+    }
+
+    public void delete(String tokenHash) throws SQLException {
+        Connection con = writeConnection();
+        try (PreparedStatement stmt = con.prepareStatement(DELETE)) {
+            stmt.setString(1, tokenHash);
+            stmt.executeUpdate();
+        } finally {
+            con.close();
+        }
+    }
+
+    // Logs the driver out everywhere except the session keepTokenHash (may be null)
+    public void deleteOthers(String email, String keepTokenHash) throws SQLException {
+        Connection con = writeConnection();
+        try (PreparedStatement stmt = con.prepareStatement(DELETE_OTHERS_FOR_EMAIL)) {
+            stmt.setString(1, email);
+            stmt.setString(2, keepTokenHash == null ? "" : keepTokenHash);
+            stmt.executeUpdate();
+        } finally {
+            con.close();
+        }
+    }
+
+    private Connection writeConnection() throws SQLException {
+        Connection con = connectionClass.CONN();
+        if (con == null) {
+            throw new SQLException("Error in connection with MySQL server");
+        }
+        return con;
+    }
+}
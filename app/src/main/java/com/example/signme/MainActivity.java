@@ -13,18 +13,13 @@ import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
 
-import org.mindrot.jbcrypt.BCrypt;
-
 import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 
 public class MainActivity extends AppCompatActivity {
     ConnectionClass connectionClass;
-    Connection con;
+    DriverDao driverDao;
     String str;
 
 
@@ -33,6 +28,7 @@ public class MainActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
         connectionClass = new ConnectionClass();
+        driverDao = new DriverDao();
         connect();
 
         TextView forgotPasswordTextView = findViewById(R.id.forgotPasswordTextView);
@@ -74,78 +70,70 @@ public class MainActivity extends AppCompatActivity {
     }
 
     public void connect() {
-        ExecutorService executorService = Executors.newSingleThreadExecutor();
-        executorService.execute(() -> {
-            try {
-                con = connectionClass.CONN(); // Establishing database connection
-                if (con == null) {
+        // The splash screen's warmup has usually connected already; don't probe again
+        Boolean reachable = AppWarmup.isDatabaseReachable();
+        if (reachable != null) {
+            str = reachable ? "Connected with MySQL server" : "Error in connection with MySQL server";
+            Toast.makeText(this, str, Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        try {
+            DbExecutor.interactive(() -> {
+                Connection con = null;
+                try {
+                    con = connectionClass.READ_CONN(); // Establishing database connection
+                    if (con == null) {
+                        str = "Error in connection with MySQL server";
+                    } else {
+                        str = "Connected with MySQL server";
+                    }
+                } catch (Exception e) {
                     str = "Error in connection with MySQL server";
-                } else {
-                    str = "Connected with MySQL server";
-                }
-            } catch (Exception e) {
-                str = "Error in connection with MySQL server";
-                e.printStackTrace(); // Log the exception for debugging
-            } finally {
-                if (con != null) {
-                    try {
-                        con.close(); // Close the connection when done
-                    } catch (SQLException e) {
-                        e.printStackTrace();
+                    e.printStackTrace(); // Log the exception for debugging
+                } finally {
+                    if (con != null) {
+                        try {
+                            con.close(); // Close the connection when done
+                        } catch (SQLException e) {
+                            e.printStackTrace();
+                        }
                     }
                 }
-            }
 
-            runOnUiThread(() -> {
-                try {
-                    Thread.sleep(1000);
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
-                Toast.makeText(this, str, Toast.LENGTH_SHORT).show(); // Show connection status
+                runOnUiThread(() -> Toast.makeText(this, str, Toast.LENGTH_SHORT).show()); // Show connection status
             });
-        });
+        } catch (RejectedExecutionException e) {
+            Toast.makeText(this, "Exception: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+        }
     }
 
     private void checkUserCredentials(String email, String password) {
-        ExecutorService executorService = Executors.newSingleThreadExecutor();
-        executorService.execute(() -> {
+        DbExecutor.essential(() -> {
             try {
-                con = connectionClass.CONN(); // Establishing database connection
-                if (con == null) {
-                    runOnUiThread(() -> Toast.makeText(MainActivity.this, "Error in connection with MySQL server", Toast.LENGTH_SHORT).show());
-                    return;
-                }
-
                 // Retrieve hashed password from database for the given email
-                String query = "SELECT PASSWORD FROM driver WHERE EMAIL = ?";
-                PreparedStatement stmt = con.prepareStatement(query);
-                stmt.setString(1, email);
-
-                ResultSet rs = stmt.executeQuery();
-                if (rs.next()) {
-                    String hashedPasswordFromDB = rs.getString("PASSWORD");
-
-                    // Verify the entered password against the hashed password from the database
-                    if (BCrypt.checkpw(password, hashedPasswordFromDB)) {
-                        runOnUiThread(() -> {
-                            Toast.makeText(MainActivity.this, "Login successful", Toast.LENGTH_SHORT).show();
-
-                            // Navigate to HomeActivity
-                            Intent intent = new Intent(MainActivity.this, HomeActivity.class);
-                            intent.putExtra("email", email); // Pass the email to HomeActivity
-                            startActivity(intent);
-                        });
-                    } else {
-                        runOnUiThread(() -> Toast.makeText(MainActivity.this, "Invalid email or password", Toast.LENGTH_SHORT).show());
+                String hashedPasswordFromDB = driverDao.findPasswordHash(email);
+
+                // Verify the entered password against the hashed password from the database
+                if (PasswordHasher.verify(password, hashedPasswordFromDB)) {
+                    rehashIfNeeded(email, password, hashedPasswordFromDB);
+                    // Remember the login so the next launch can skip this screen
+                    try {
+                        LoginSession.getInstance(this).start(email);
+                    } catch (SQLException e) {
+                        e.printStackTrace();
                     }
+                    runOnUiThread(() -> {
+                        Toast.makeText(MainActivity.this, "Login successful", Toast.LENGTH_SHORT).show();
+
+                        // Navigate to HomeActivity
+                        Intent intent = new Intent(MainActivity.this, HomeActivity.class);
+                        intent.putExtra("email", email); // Pass the email to HomeActivity
+                        startActivity(intent);
+                    });
                 } else {
                     runOnUiThread(() -> Toast.makeText(MainActivity.this, "Invalid email or password", Toast.LENGTH_SHORT).show());
                 }
-
-                rs.close();
-                stmt.close();
-                con.close();
             } catch (SQLException e) {
                 e.printStackTrace();
                 runOnUiThread(() -> Toast.makeText(MainActivity.this, "SQL Exception: " + e.getMessage(), Toast.LENGTH_SHORT).show());
@@ -156,5 +144,23 @@ public class MainActivity extends AppCompatActivity {
         });
     }
 
-
+    // Moves the stored hash to the fleet's BCrypt cost now that we know the password.
+    // Checked in the background too: the cost may still need calibrating, which mustn't
+    // hold up the login.
+    private void rehashIfNeeded(String email, String password, String currentHash) {
+        try {
+            DbExecutor.background(() -> {
+                if (!PasswordHasher.needsRehash(this, currentHash)) {
+                    return;
+                }
+                try {
+                    driverDao.replacePasswordHash(email, currentHash, PasswordHasher.hash(this, password));
+                } catch (SQLException e) {
+                    e.printStackTrace(); // Try again next login
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            e.printStackTrace(); // Try again next login
+        }
+    }
 }
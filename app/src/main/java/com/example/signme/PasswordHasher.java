@@ -0,0 +1,164 @@
+package com.example.signme;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.mindrot.jbcrypt.BCrypt;
+
+import java.sql.SQLException;
+
+/**
+ * BCrypt hashing with a work factor calibrated to the devices drivers use.
+ *
+ * Each device's cost is the highest that keeps one hash under TARGET_MS there, but
+ * never below MIN_COST. The floor is the cost every hash was made at before
+ * calibration, so the slowest phones, which can't reach TARGET_MS even at MIN_COST,
+ * keep the verification time they had. The calibration is measured once and redone
+ * after an OS update.
+ *
+ * Password hashes live in the shared driver table and a driver may log in on several
+ * phones, so hashes aren't made at this device's cost but at the fleet cost: the
+ * lowest any recently active install has reported (see DeviceDao). A hash made on a
+ * fast phone is then still quick to verify on the slowest one, and devices don't
+ * rewrite each other's hashes back and forth. Hashes made at another cost are
+ * rewritten at the fleet cost after the next successful login, see needsRehash().
+ *
+ * Everything here is CPU-bound for hundreds of milliseconds; never call it on the
+ * main thread.
+ */
+public final class PasswordHasher {
+
+    private static final String TAG = "PasswordHasher";
+
+    // Security floor: BCrypt.gensalt()'s default and OWASP's minimum, never go below it.
+    // A phone too slow to hash at this cost within TARGET_MS stays at it.
+    static final int MIN_COST = 10;
+    private static final int MAX_COST = 14;
+    private static final long TARGET_MS = 250;
+
+    private static final String PREFS_NAME = "password_hasher";
+    private static final String KEY_COST = "cost";
+    private static final String KEY_FINGERPRINT = "fingerprint";
+    private static final String KEY_FLEET_COST = "fleet_cost";
+
+    private static volatile int calibratedCost;
+    // -1 until read from prefs, 0 if this device hasn't heard the fleet cost from the server yet
+    private static volatile int fleetCost = -1;
+
+    private PasswordHasher() {
+    }
+
+    public static String hash(Context context, String password) {
+        return BCrypt.hashpw(password, BCrypt.gensalt(getCost(context)));
+    }
+
+    public static boolean verify(String password, String hash) {
+        return hash != null && BCrypt.checkpw(password, hash);
+    }
+
+    /**
+     * True if hash was made at a different cost than the fleet cost. Until this device
+     * has heard the fleet cost, hashes are left alone: rewriting them at this device's
+     * cost could put them out of a slower device's reach.
+     */
+    public static boolean needsRehash(Context context, String hash) {
+        return getFleetCost(context) != 0 && costOf(hash) != getCost(context);
+    }
+
+    /**
+     * Returns the cost new hashes are made at: the fleet cost, or this device's own if
+     * the fleet cost isn't known yet (or is higher, until this device's calibration
+     * reaches the server). May calibrate first, see getDeviceCost().
+     */
+    public static int getCost(Context context) {
+        int deviceCost = getDeviceCost(context);
+        int fleet = getFleetCost(context);
+        return fleet == 0 ? deviceCost : Math.min(fleet, deviceCost);
+    }
+
+    /**
+     * Reports this device's cost to the server and caches the fleet cost it answers
+     * with. Blocks, and may calibrate first; call it from a DbExecutor task. Only
+     * calibrates until the install is registered, see SessionIdGenerator.registerNode().
+     */
+    public static void refreshFleetCost(Context context) throws SQLException {
+        int deviceCost = getDeviceCost(context);
+        long deviceId = SessionIdGenerator.getInstance(context).getDeviceId();
+        if (deviceId == 0) {
+            return;
+        }
+        int cost = new DeviceDao().reportBcryptCost(deviceId, deviceCost);
+        fleetCost = cost;
+        prefs(context).edit().putInt(KEY_FLEET_COST, cost).apply();
+    }
+
+    private static int getFleetCost(Context context) {
+        int cost = fleetCost;
+        if (cost < 0) {
+            cost = prefs(context).getInt(KEY_FLEET_COST, 0);
+            fleetCost = cost;
+        }
+        return cost;
+    }
+
+    /**
+     * Returns this device's cost, calibrating first if it hasn't been measured on this
+     * OS build. Calibrating takes up to a couple of seconds on a slow phone.
+     */
+    static int getDeviceCost(Context context) {
+        int cost = calibratedCost;
+        if (cost != 0) {
+            return cost;
+        }
+        synchronized (PasswordHasher.class) {
+            if (calibratedCost == 0) {
+                SharedPreferences prefs = prefs(context);
+                if (Build.FINGERPRINT.equals(prefs.getString(KEY_FINGERPRINT, null))) {
+                    calibratedCost = prefs.getInt(KEY_COST, MIN_COST);
+                } else {
+                    calibratedCost = calibrate();
+                    prefs.edit()
+                            .putInt(KEY_COST, calibratedCost)
+                            .putString(KEY_FINGERPRINT, Build.FINGERPRINT)
+                            .apply();
+                }
+            }
+            return calibratedCost;
+        }
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    // Times one hash at the floor; each extra cost step doubles the work
+    private static int calibrate() {
+        BCrypt.hashpw("calibration", BCrypt.gensalt(MIN_COST)); // Warm up the JIT first
+        long start = SystemClock.elapsedRealtime();
+        BCrypt.hashpw("calibration", BCrypt.gensalt(MIN_COST));
+        long elapsedMs = Math.max(1, SystemClock.elapsedRealtime() - start);
+
+        int cost = MIN_COST;
+        while (cost < MAX_COST && elapsedMs * 2 <= TARGET_MS) {
+            elapsedMs *= 2;
+            cost++;
+        }
+        Log.d(TAG, "Calibrated BCrypt cost " + cost + " (~" + elapsedMs + " ms per hash)");
+        return cost;
+    }
+
+    // "$2a$12$..." -> 12, or -1 if hash isn't a BCrypt hash
+    static int costOf(String hash) {
+        if (hash == null || hash.length() < 7 || hash.charAt(0) != '$' || hash.charAt(3) != '$') {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(hash.substring(4, 6));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
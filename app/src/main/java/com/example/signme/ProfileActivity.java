@@ -25,16 +25,13 @@ import com.bumptech.glide.request.RequestOptions;
 import com.bumptech.glide.load.resource.bitmap.RoundedCorners;
 import com.bumptech.glide.load.resource.bitmap.CenterCrop;
 
-import java.io.ByteArrayOutputStream;
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
+import java.io.File;
+import java.io.IOException;
 import java.sql.SQLException;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Locale;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class ProfileActivity extends AppCompatActivity {
@@ -49,13 +46,23 @@ public class ProfileActivity extends AppCompatActivity {
     private Button editProfileButton;
     private Button changePasswordButton;
 
-    private ConnectionClass connectionClass;
-    private Connection con;
+    private DriverDao driverDao;
+    private ProfileImageDao profileImageDao;
+    private ProfileImageCache profileImageCache;
     private String email;
     private Bitmap selectedImageBitmap;
 
     private static final String TAG = "ProfileActivity";
 
+    private final QueryLoader queryLoader = new QueryLoader(this);
+
+    // Reload when the profile is edited elsewhere
+    private final DriverProfileStore.Observer profileObserver = changedEmail -> {
+        if (changedEmail.equals(email)) {
+            loadUserProfile();
+        }
+    };
+
     @Override
     protected void onResume() {
         super.onResume();
@@ -67,7 +74,9 @@ public class ProfileActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_profile);
 
-        connectionClass = new ConnectionClass();
+        driverDao = new DriverDao();
+        profileImageDao = new ProfileImageDao();
+        profileImageCache = ProfileImageCache.getInstance(this);
 
         profileImageView = findViewById(R.id.profileImageView);
         userNameTextView = findViewById(R.id.userNameTextView);
@@ -98,6 +107,14 @@ public class ProfileActivity extends AppCompatActivity {
         });
 
         profileImageView.setOnClickListener(v -> openImageChooser());
+
+        DriverProfileStore.getInstance().addObserver(profileObserver);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        DriverProfileStore.getInstance().removeObserver(profileObserver);
     }
 
     private void openImageChooser() {
@@ -110,42 +127,37 @@ public class ProfileActivity extends AppCompatActivity {
         super.onActivityResult(requestCode, resultCode, data);
         if (requestCode == PICK_IMAGE_REQUEST && resultCode == RESULT_OK && data != null && data.getData() != null) {
             Uri selectedImageUri = data.getData();
-            try {
-                selectedImageBitmap = MediaStore.Images.Media.getBitmap(this.getContentResolver(), selectedImageUri);
-                profileImageView.setImageBitmap(selectedImageBitmap);
-                saveImageToDatabase(selectedImageBitmap);
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+            // Decode at the largest size we store, off the main thread
+            queryLoader.load("pickImage", delivery -> {
+                try {
+                    Bitmap bitmap = ProfileImageDecoder.decode(getContentResolver(), selectedImageUri,
+                            ProfileImageVariants.SIZE_LARGE);
+                    delivery.post(() -> {
+                        selectedImageBitmap = bitmap;
+                        profileImageView.setImageBitmap(selectedImageBitmap);
+                        saveImageToDatabase(selectedImageBitmap);
+                    });
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    delivery.post(() -> Toast.makeText(ProfileActivity.this, "Could not load image: " + e.getMessage(), Toast.LENGTH_SHORT).show());
+                }
+            });
         }
     }
 
     private void saveImageToDatabase(Bitmap bitmap) {
-        ExecutorService executorService = Executors.newSingleThreadExecutor();
-        executorService.execute(() -> {
+        DbExecutor.essential(() -> {
             try {
-                con = connectionClass.CONN();
-                if (con == null) {
-                    runOnUiThread(() -> Toast.makeText(ProfileActivity.this, "Error in connection with MySQL server", Toast.LENGTH_SHORT).show());
-                    return;
-                }
-
-                ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-                bitmap.compress(Bitmap.CompressFormat.JPEG, 100, byteArrayOutputStream);
-                byte[] imageBytes = byteArrayOutputStream.toByteArray();
-
-                String query = "UPDATE driver SET PROFILE_PICTURE = ? WHERE EMAIL = ?";
-                PreparedStatement stmt = con.prepareStatement(query);
-                stmt.setBytes(1, imageBytes);
-                stmt.setString(2, email);
-
-                int rowsUpdated = stmt.executeUpdate();
-                if (rowsUpdated > 0) {
+                Map<Integer, byte[]> variants = ProfileImageVariants.create(bitmap);
+                String contentHash = ProfileImageVariants.contentHash(variants);
+
+                if (profileImageDao.save(email, contentHash, variants)) {
+                    // Our own upload shouldn't be downloaded again
+                    profileImageCache.put(contentHash, ProfileImageVariants.SIZE_MEDIUM,
+                            variants.get(ProfileImageVariants.SIZE_MEDIUM));
+                    DriverProfileStore.getInstance().invalidate(email);
                     runOnUiThread(() -> Toast.makeText(ProfileActivity.this, "Profile picture updated successfully", Toast.LENGTH_SHORT).show());
                 }
-
-                stmt.close();
-                con.close();
             } catch (SQLException e) {
                 e.printStackTrace();
                 runOnUiThread(() -> Toast.makeText(ProfileActivity.this, "SQL Exception: " + e.getMessage(), Toast.LENGTH_SHORT).show());
@@ -156,6 +168,38 @@ public class ProfileActivity extends AppCompatActivity {
         });
     }
 
+    // Returns the cached variant the profile screen draws, converting a pre-variant picture on first view
+    private File loadProfilePicture(Driver driver) throws SQLException, IOException {
+        if (driver.getProfileImageHash() != null) {
+            return profileImageCache.get(email, driver.getProfileImageHash(), ProfileImageVariants.SIZE_MEDIUM);
+        }
+
+        byte[] legacyPicture = driverDao.findLegacyPicture(email);
+        if (legacyPicture == null || legacyPicture.length == 0) {
+            return null;
+        }
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(legacyPicture, 0, legacyPicture.length, options);
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = ProfileImageDecoder.sampleSizeFor(options.outWidth, options.outHeight,
+                ProfileImageVariants.SIZE_LARGE);
+        options.inMutable = true;
+        Bitmap bitmap = BitmapFactory.decodeByteArray(legacyPicture, 0, legacyPicture.length, options);
+        if (bitmap == null) {
+            return null;
+        }
+        Map<Integer, byte[]> variants = ProfileImageVariants.create(bitmap);
+        BitmapPool.getInstance().put(bitmap);
+        String contentHash = ProfileImageVariants.contentHash(variants);
+        // No invalidate(): observers would reload the screen we're loading now
+        if (profileImageDao.save(email, contentHash, variants)) {
+            DriverProfileStore.getInstance().updateCachedImageHash(email, contentHash);
+        }
+        return profileImageCache.put(contentHash, ProfileImageVariants.SIZE_MEDIUM,
+                variants.get(ProfileImageVariants.SIZE_MEDIUM));
+    }
+
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         getMenuInflater().inflate(R.menu.menu_profile, menu);
@@ -176,31 +220,18 @@ public class ProfileActivity extends AppCompatActivity {
     }
 
     private void loadUserProfile() {
-        ExecutorService executorService = Executors.newSingleThreadExecutor();
-        executorService.execute(() -> {
+        queryLoader.load("profile", delivery -> {
             try {
-                con = connectionClass.CONN();
-                if (con == null) {
-                    runOnUiThread(() -> Toast.makeText(ProfileActivity.this, "Error in connection with MySQL server", Toast.LENGTH_SHORT).show());
-                    return;
-                }
-
-                String query = "SELECT FIRST_NAME, LAST_NAME, DATE_OF_BIRTH, PROFILE_PICTURE FROM driver WHERE EMAIL = ?";
-                PreparedStatement stmt = con.prepareStatement(query);
-                stmt.setString(1, email);
-
-                ResultSet rs = stmt.executeQuery();
-                if (rs.next()) {
-                    String firstName = rs.getString("FIRST_NAME");
-                    String lastName = rs.getString("LAST_NAME");
-                    String fullName = firstName + " " + lastName;
-                    String dob = rs.getString("DATE_OF_BIRTH");
-                    byte[] profilePicture = rs.getBytes("PROFILE_PICTURE");
+                Driver driver = DriverProfileStore.getInstance().get(email);
+                if (driver != null) {
+                    String fullName = driver.getFullName();
+                    String dob = driver.getDateOfBirth();
+                    File profilePicture = loadProfilePicture(driver);
 
                     // Log the retrieved DOB
                     Log.d(TAG, "Retrieved DOB: " + dob);
 
-                    runOnUiThread(() -> {
+                    delivery.post(() -> {
                         userNameTextView.setText(fullName);
                         emailTextView.setText(email);
                         if (dob != null && !dob.isEmpty()) {
@@ -212,10 +243,11 @@ public class ProfileActivity extends AppCompatActivity {
                         }
 
                         // Load the profile image using Glide
-                        if (profilePicture != null && profilePicture.length > 0) {
+                        if (profilePicture != null) {
                             Glide.with(ProfileActivity.this)
                                     .load(profilePicture)
                                     .apply(new RequestOptions()
+                                            .signature(ProfileImageCache.signature(profilePicture))
                                             .transform(new CenterCrop(), new RoundedCorners(20)))
                                     .into(profileImageView);
                         } else {
@@ -227,16 +259,12 @@ public class ProfileActivity extends AppCompatActivity {
                         }
                     });
                 }
-
-                rs.close();
-                stmt.close();
-                con.close();
             } catch (SQLException e) {
                 e.printStackTrace();
-                runOnUiThread(() -> Toast.makeText(ProfileActivity.this, "SQL Exception: " + e.getMessage(), Toast.LENGTH_SHORT).show());
+                delivery.post(() -> Toast.makeText(ProfileActivity.this, "SQL Exception: " + e.getMessage(), Toast.LENGTH_SHORT).show());
             } catch (Exception e) {
                 e.printStackTrace();
-                runOnUiThread(() -> Toast.makeText(ProfileActivity.this, "Exception: " + e.getMessage(), Toast.LENGTH_SHORT).show());
+                delivery.post(() -> Toast.makeText(ProfileActivity.this, "Exception: " + e.getMessage(), Toast.LENGTH_SHORT).show());
             }
         });
     }
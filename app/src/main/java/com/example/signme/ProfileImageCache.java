@@ -0,0 +1,110 @@
+package com.example.signme;
+
+import android.content.Context;
+
+import com.bumptech.glide.load.Key;
+import com.bumptech.glide.signature.ObjectKey;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * On-device cache of profile picture variants, addressed by content hash.
+ *
+ * The driver row (already cached by DriverProfileStore) carries the hash of the
+ * current picture, so a variant on disk under that hash is by definition up to date
+ * and the image bytes never have to cross the wire again. A new picture gets a new
+ * hash, which misses and downloads once. Files are served to Glide with signature()
+ * as their key, so its in-memory LRU of decoded bitmaps is keyed by hash too.
+ */
+public class ProfileImageCache {
+
+    private static final String DIRECTORY = "profile_images";
+    private static final long MAX_DISK_BYTES = 8L * 1024 * 1024;
+
+    private static ProfileImageCache instance;
+
+    private final File directory;
+    private final ProfileImageDao profileImageDao = new ProfileImageDao();
+
+    public static synchronized ProfileImageCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new ProfileImageCache(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private ProfileImageCache(Context context) {
+        this.directory = new File(context.getCacheDir(), DIRECTORY);
+    }
+
+    // Glide cache key for a file from get() or put(); its name is the hash and size
+    public static Key signature(File file) {
+        return new ObjectKey(file.getName());
+    }
+
+    /**
+     * Returns the cached file for a variant, downloading it first on a miss. Returns
+     * null if the server has no such picture. Blocks; call it from a DbExecutor task.
+     */
+    public File get(String email, String contentHash, int sizePx) throws SQLException, IOException {
+        File file = fileFor(contentHash, sizePx);
+        if (file.isFile()) {
+            file.setLastModified(System.currentTimeMillis()); // Keeps it off the trim list
+            return file;
+        }
+        byte[] image = profileImageDao.findVariant(email, contentHash, sizePx);
+        return image == null ? null : put(contentHash, sizePx, image);
+    }
+
+    // Stores a variant we already have in hand, e.g. one we just encoded for upload
+    public synchronized File put(String contentHash, int sizePx, byte[] image) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can't create " + directory);
+        }
+        File file = fileFor(contentHash, sizePx);
+        File partial = new File(directory, file.getName() + ".part");
+        try (FileOutputStream out = new FileOutputStream(partial)) {
+            out.write(image);
+            out.getFD().sync();
+        }
+        if (!partial.renameTo(file)) {
+            partial.delete();
+            throw new IOException("Can't write " + file);
+        }
+        trim();
+        return file;
+    }
+
+    private File fileFor(String contentHash, int sizePx) {
+        return new File(directory, contentHash + "_" + sizePx + ".webp");
+    }
+
+    // Deletes the least recently used files until the cache fits its budget
+    private void trim() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        long total = 0;
+        for (File file : files) {
+            total += file.length();
+        }
+        if (total <= MAX_DISK_BYTES) {
+            return;
+        }
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (File file : files) {
+            if (total <= MAX_DISK_BYTES) {
+                break;
+            }
+            long length = file.length();
+            if (file.delete()) {
+                total -= length;
+            }
+        }
+    }
+}
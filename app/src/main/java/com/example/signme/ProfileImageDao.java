@@ -0,0 +1,106 @@
+package com.example.signme;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+
+/**
+ * Owns the profile_image table: one row per (driver, picture hash, size).
+ *
+ * The driver row only points at the current picture's hash, so loading a profile
+ * never drags image bytes along, and a screen fetches just the variant it draws.
+ * Image bytes go over the wire as streams rather than being bound as byte arrays.
+ */
+public class ProfileImageDao {
+
+    private static final String SELECT_VARIANT =
+            "SELECT IMAGE FROM profile_image WHERE EMAIL = ? AND CONTENT_HASH = ? AND SIZE_PX = ?";
+    private static final String INSERT_VARIANT =
+            "INSERT INTO profile_image (EMAIL, CONTENT_HASH, SIZE_PX, IMAGE, CREATED_AT) VALUES (?, ?, ?, ?, NOW()) " +
+            "ON DUPLICATE KEY UPDATE SIZE_PX = SIZE_PX";
+    private static final String DELETE_OTHER_PICTURES =
+            "DELETE FROM profile_image WHERE EMAIL = ? AND CONTENT_HASH <> ?";
+    // The legacy full-size copy is dropped once the variants exist
+    private static final String UPDATE_DRIVER_HASH =
+            "UPDATE driver SET PROFILE_IMAGE_HASH = ?, PROFILE_PICTURE = NULL WHERE EMAIL = ?";
+
+    private final ConnectionClass connectionClass = new ConnectionClass();
+
+    // Returns the variant's bytes, or null if that picture or size isn't stored
+    public byte[] findVariant(String email, String contentHash, int sizePx) throws SQLException, IOException {
+        Connection con = connectionClass.READ_CONN();
+        if (con == null) {
+            throw new SQLException("Error in connection with MySQL server");
+        }
+        try (PreparedStatement stmt = con.prepareStatement(SELECT_VARIANT)) {
+            stmt.setString(1, email);
+            stmt.setString(2, contentHash);
+            stmt.setInt(3, sizePx);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                try (InputStream in = rs.getBinaryStream("IMAGE")) {
+                    return in == null ? null : readFully(in);
+                }
+            }
+        } finally {
+            con.close();
+        }
+    }
+
+    /**
+     * Stores all variants of a new picture and makes it the driver's current one, in a
+     * single transaction. Variants of the driver's previous pictures are deleted.
+     */
+    public boolean save(String email, String contentHash, Map<Integer, byte[]> variants) throws SQLException {
+        Connection con = connectionClass.CONN();
+        if (con == null) {
+            throw new SQLException("Error in connection with MySQL server");
+        }
+        try {
+            con.setAutoCommit(false);
+            try (PreparedStatement stmt = con.prepareStatement(INSERT_VARIANT)) {
+                for (Map.Entry<Integer, byte[]> variant : variants.entrySet()) {
+                    stmt.setString(1, email);
+                    stmt.setString(2, contentHash);
+                    stmt.setInt(3, variant.getKey());
+                    stmt.setBinaryStream(4, new ByteArrayInputStream(variant.getValue()), variant.getValue().length);
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+            }
+            try (PreparedStatement stmt = con.prepareStatement(DELETE_OTHER_PICTURES)) {
+                stmt.setString(1, email);
+                stmt.setString(2, contentHash);
+                stmt.executeUpdate();
+            }
+            boolean updated;
+            try (PreparedStatement stmt = con.prepareStatement(UPDATE_DRIVER_HASH)) {
+                stmt.setString(1, contentHash);
+                stmt.setString(2, email);
+                updated = stmt.executeUpdate() > 0;
+            }
+            con.commit();
+            return updated;
+        } finally {
+            con.close(); // The pool rolls back and restores auto-commit if we didn't get to commit
+        }
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.signme;
+
+import android.content.ContentResolver;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decodes a picked photo at roughly the size we store, never at full sensor resolution.
+ *
+ * Reads the image bounds first, then decodes with the largest power-of-two
+ * inSampleSize that keeps the short side at or above the target, into a pooled bitmap
+ * where one fits. A 50 MP photo picked for a 1024 px avatar decodes to about
+ * 1/16th of the pixels. Does I/O; call it off the main thread.
+ */
+public final class ProfileImageDecoder {
+
+    private ProfileImageDecoder() {
+    }
+
+    public static Bitmap decode(ContentResolver resolver, Uri uri, int targetPx) throws IOException {
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        try (InputStream in = open(resolver, uri)) {
+            BitmapFactory.decodeStream(in, null, bounds);
+        }
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+            throw new IOException("Not an image: " + uri);
+        }
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSizeFor(bounds.outWidth, bounds.outHeight, targetPx);
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        options.inMutable = true;
+        long decodedBytes = (long) ceilDiv(bounds.outWidth, options.inSampleSize)
+                * ceilDiv(bounds.outHeight, options.inSampleSize) * 4;
+        options.inBitmap = BitmapPool.getInstance().takeReusable(decodedBytes);
+
+        try (InputStream in = open(resolver, uri)) {
+            return decode(in, options);
+        } catch (IllegalArgumentException e) {
+            // The decoder couldn't use the pooled bitmap after all; decode into a fresh one
+            BitmapPool.getInstance().put(options.inBitmap);
+            options.inBitmap = null;
+            try (InputStream in = open(resolver, uri)) {
+                return decode(in, options);
+            }
+        }
+    }
+
+    // Largest power of two that keeps the short side at or above targetPx
+    static int sampleSizeFor(int width, int height, int targetPx) {
+        int shortSide = Math.min(width, height);
+        int sampleSize = 1;
+        while (shortSide / (sampleSize * 2) >= targetPx) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    private static Bitmap decode(InputStream in, BitmapFactory.Options options) throws IOException {
+        Bitmap bitmap = BitmapFactory.decodeStream(in, null, options);
+        if (bitmap == null) {
+            throw new IOException("Could not decode the selected image");
+        }
+        return bitmap;
+    }
+
+    private static InputStream open(ContentResolver resolver, Uri uri) throws IOException {
+        InputStream in = resolver.openInputStream(uri);
+        if (in == null) {
+            throw new IOException("Could not open " + uri);
+        }
+        return in;
+    }
+
+    private static int ceilDiv(int value, int divisor) {
+        return (value + divisor - 1) / divisor;
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.signme;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.os.Build;
+
+import java.io.ByteArrayOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Turns an uploaded picture into the fixed-size square WebP variants kept in
+ * profile_image, so screens download the size they draw instead of the original.
+ */
+public final class ProfileImageVariants {
+
+    public static final int SIZE_SMALL = 96;    // Lists, toolbar
+    public static final int SIZE_MEDIUM = 256;  // Profile screen
+    public static final int SIZE_LARGE = 1024;  // Full screen
+
+    private static final int[] SIZES = {SIZE_SMALL, SIZE_MEDIUM, SIZE_LARGE};
+    private static final int WEBP_QUALITY = 80;
+
+    private ProfileImageVariants() {
+    }
+
+    /**
+     * Center-crops source to a square and encodes it at every size, smallest first.
+     * A source smaller than a size is not upscaled. Slow; call it off the main thread.
+     */
+    public static Map<Integer, byte[]> create(Bitmap source) {
+        int side = Math.min(source.getWidth(), source.getHeight());
+        Rect crop = new Rect(
+                (source.getWidth() - side) / 2,
+                (source.getHeight() - side) / 2,
+                (source.getWidth() + side) / 2,
+                (source.getHeight() + side) / 2);
+        Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+        Map<Integer, byte[]> variants = new LinkedHashMap<>();
+        for (int size : SIZES) {
+            int target = Math.min(size, side);
+            Bitmap scaled = BitmapPool.getInstance().get(target, target);
+            new Canvas(scaled).drawBitmap(source, crop, new Rect(0, 0, target, target), paint);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            scaled.compress(webp(), WEBP_QUALITY, out);
+            BitmapPool.getInstance().put(scaled);
+            variants.put(size, out.toByteArray());
+        }
+        return variants;
+    }
+
+    // Hex SHA-256 of the largest variant, which identifies the picture in profile_image
+    public static String contentHash(Map<Integer, byte[]> variants) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(variants.get(SIZE_LARGE));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // Every Android device has SHA-256
+        }
+    }
+
+    // Smallest variant that is at least px wide, for an ImageView of that size
+    public static int sizeFor(int px) {
+        for (int size : SIZES) {
+            if (size >= px) {
+                return size;
+            }
+        }
+        return SIZE_LARGE;
+    }
+
+    @SuppressWarnings("deprecation")
+    private static Bitmap.CompressFormat webp() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.R
+                ? Bitmap.CompressFormat.WEBP_LOSSY
+                : Bitmap.CompressFormat.WEBP;
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.signme;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.DefaultLifecycleObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Runs a screen's database loads on DbExecutor and ties them to its lifecycle.
+ *
+ * Starting a load under a key supersedes any load still running under that key, e.g.
+ * a refresh replaces the previous fetch. Superseded loads, and every load when the
+ * screen is destroyed, have their in-flight statements cancelled (see QueryScope) and
+ * their results dropped, so the server stops working on them and nothing touches the
+ * screen's views after it is gone.
+ */
+public class QueryLoader implements DefaultLifecycleObserver {
+
+    private static final String TAG = "QueryLoader";
+
+    public interface Task {
+        // Runs on a database thread. Use delivery.post() instead of runOnUiThread().
+        void run(Delivery delivery);
+    }
+
+    public interface Failure {
+        // Runs on the main thread if the load couldn't be started, e.g. DbExecutor was full
+        void onFailure(Exception e);
+    }
+
+    // Hands results back to the main thread, unless the load has been cancelled since
+    public static class Delivery {
+        private final QueryLoader loader;
+        private final QueryScope scope = new QueryScope();
+        private Future<?> future;
+
+        private Delivery(QueryLoader loader) {
+            this.loader = loader;
+        }
+
+        public void post(Runnable uiWork) {
+            loader.mainHandler.post(() -> {
+                if (!isCancelled()) {
+                    uiWork.run();
+                }
+            });
+        }
+
+        public boolean isCancelled() {
+            return scope.isCancelled();
+        }
+
+        private void cancel() {
+            scope.cancel();
+            if (future != null) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Loads in flight by key, only touched on the main thread
+    private final Map<String, Delivery> loads = new HashMap<>();
+    private boolean destroyed;
+
+    public QueryLoader(LifecycleOwner owner) {
+        owner.getLifecycle().addObserver(this);
+    }
+
+    // Starts task as an interactive load, cancelling whatever was running under key
+    public void load(String key, Task task) {
+        load(key, task, null);
+    }
+
+    // As load(key, task), with onFailure told if the load is refused instead of just logging it
+    public void load(String key, Task task, Failure onFailure) {
+        if (Looper.myLooper() != Looper.getMainLooper()) {
+            mainHandler.post(() -> load(key, task, onFailure)); // e.g. from a DriverProfileStore observer
+            return;
+        }
+        if (destroyed) {
+            return;
+        }
+        cancel(key);
+
+        Delivery delivery = new Delivery(this);
+        loads.put(key, delivery);
+        try {
+            delivery.future = DbExecutor.interactive(() -> {
+                if (delivery.isCancelled()) {
+                    return;
+                }
+                delivery.scope.bind();
+                try {
+                    task.run(delivery);
+                } finally {
+                    delivery.scope.unbind();
+                    mainHandler.post(() -> loads.remove(key, delivery));
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Nothing will run, so nothing else would ever clear it from loads
+            loads.remove(key, delivery);
+            Log.w(TAG, "Load " + key + " not started: " + e.getMessage());
+            if (onFailure != null) {
+                mainHandler.post(() -> {
+                    if (!destroyed) {
+                        onFailure.onFailure(e);
+                    }
+                });
+            }
+        }
+    }
+
+    // Cancels the load running under key, if any
+    public void cancel(String key) {
+        Delivery previous = loads.remove(key);
+        if (previous != null) {
+            previous.cancel();
+        }
+    }
+
+    public boolean isLoading(String key) {
+        return loads.containsKey(key);
+    }
+
+    @Override
+    public void onDestroy(@NonNull LifecycleOwner owner) {
+        destroyed = true;
+        owner.getLifecycle().removeObserver(this);
+        for (Delivery delivery : new ArrayList<>(loads.values())) {
+            delivery.cancel();
+        }
+        loads.clear();
+    }
+}
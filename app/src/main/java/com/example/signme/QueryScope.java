@@ -0,0 +1,82 @@
+package com.example.signme;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Tracks the connections a load has borrowed so another thread can cancel their statements.
+ *
+ * A QueryLoader binds a scope to the worker thread while a load runs; ConnectionPool
+ * registers each connection borrowed on that thread with it once it creates a
+ * statement, and unregisters it when it goes back to the pool. cancel() has every
+ * connection still out call Statement.cancel() on its statements, which makes MySQL
+ * abort the query, and from then on the pool refuses new connections for the scope
+ * and discards the ones it had.
+ *
+ * Only connections still held by the load are touched: once one is back in the pool
+ * its (cached) statements and its server thread may belong to another load.
+ */
+final class QueryScope {
+
+    private static final ThreadLocal<QueryScope> current = new ThreadLocal<>();
+
+    // A borrowed connection whose statements cancel() should abort
+    interface Member {
+        // Cancels the statements it created, unless it has been returned to the pool
+        void cancelStatements();
+    }
+
+    private final Set<Member> members = new LinkedHashSet<>();
+    private volatile boolean cancelled;
+
+    // The scope bound to the calling thread, or null outside a QueryLoader load
+    static QueryScope current() {
+        return current.get();
+    }
+
+    void bind() {
+        current.set(this);
+    }
+
+    void unbind() {
+        current.remove();
+    }
+
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    void checkNotCancelled() throws SQLException {
+        if (cancelled) {
+            throw new SQLException("Query cancelled", "70100");
+        }
+    }
+
+    // Throws, without registering, if the scope has already been cancelled
+    synchronized void register(Member member) throws SQLException {
+        checkNotCancelled();
+        members.add(member);
+    }
+
+    synchronized void unregister(Member member) {
+        members.remove(member);
+    }
+
+    void cancel() {
+        List<Member> toCancel;
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            toCancel = new ArrayList<>(members);
+            members.clear();
+        }
+        for (Member member : toCancel) {
+            member.cancelStatements();
+        }
+    }
+}
@@ -15,19 +15,14 @@ import android.widget.TextView;
 import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.regex.Pattern;
-import org.mindrot.jbcrypt.BCrypt;
 
 
 public class RegisterActivity extends AppCompatActivity {
 
-    private ConnectionClass connectionClass;
+    private DriverDao driverDao;
     private EditText firstNameEditText, lastNameEditText, emailEditText, passwordEditText, confirmPasswordEditText;
     private Button registerButton;
 
@@ -36,7 +31,7 @@ public class RegisterActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_register);
 
-        connectionClass = new ConnectionClass();
+        driverDao = new DriverDao();
         // Initialize views
         firstNameEditText = findViewById(R.id.firstNameEditText);
         lastNameEditText = findViewById(R.id.lastNameEditText);
@@ -125,32 +120,16 @@ public class RegisterActivity extends AppCompatActivity {
             return;
         }
 
-        // Encrypt the password using bcrypt before saving
-        String hashedPassword = BCrypt.hashpw(password, BCrypt.gensalt());
-
         // Insert user data into the database
-        saveUserData(firstName, lastName, email, hashedPassword);
+        saveUserData(firstName, lastName, email, password);
     }
 
     private void saveUserData(String firstName, String lastName, String email, String password) {
-        ExecutorService executorService = Executors.newSingleThreadExecutor();
-        executorService.execute(() -> {
+        DbExecutor.essential(() -> {
             try {
-                Connection con = connectionClass.CONN();
-                if (con == null) {
-                    runOnUiThread(() -> Toast.makeText(this, "Error in connection with MySQL server", Toast.LENGTH_SHORT).show());
-                    return;
-                }
-
-                String query = "INSERT INTO driver (FIRST_NAME, LAST_NAME, EMAIL, PASSWORD) VALUES (?, ?, ?, ?)";
-                PreparedStatement stmt = con.prepareStatement(query);
-                stmt.setString(1, firstName);
-                stmt.setString(2, lastName);
-                stmt.setString(3, email);
-                stmt.setString(4, password);
-
-                int rowsInserted = stmt.executeUpdate();
-                if (rowsInserted > 0) {
+                // Encrypt the password using bcrypt before saving
+                String hashedPassword = PasswordHasher.hash(this, password);
+                if (driverDao.insert(firstName, lastName, email, hashedPassword)) {
                     runOnUiThread(() -> Toast.makeText(this, "Registration successful", Toast.LENGTH_SHORT).show());
                     // Navigate to HomeActivity
                     Intent intent = new Intent(RegisterActivity.this, HomeActivity.class);
@@ -158,8 +137,6 @@ public class RegisterActivity extends AppCompatActivity {
                 } else {
                     runOnUiThread(() -> Toast.makeText(this, "Registration failed", Toast.LENGTH_SHORT).show());
                 }
-
-                con.close();
             } catch (SQLException e) {
                 e.printStackTrace();
                 runOnUiThread(() -> Toast.makeText(this, "SQL Exception: " + e.getMessage(), Toast.LENGTH_SHORT).show());
@@ -176,35 +153,23 @@ public class RegisterActivity extends AppCompatActivity {
             return;
         }
 
-        ExecutorService executorService = Executors.newSingleThreadExecutor();
-        executorService.execute(() -> {
-            try {
-                Connection con = connectionClass.CONN();
-                if (con == null) {
-                    runOnUiThread(() -> Toast.makeText(this, "Error in connection with MySQL server", Toast.LENGTH_SHORT).show());
-                    return;
+        try {
+            DbExecutor.interactive(() -> {
+                try {
+                    if (driverDao.exists(email)) {
+                        runOnUiThread(() -> emailEditText.setError("Email address already exists"));
+                    }
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                    runOnUiThread(() -> Toast.makeText(this, "SQL Exception: " + e.getMessage(), Toast.LENGTH_SHORT).show());
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    runOnUiThread(() -> Toast.makeText(this, "Exception: " + e.getMessage(), Toast.LENGTH_SHORT).show());
                 }
-
-                String query = "SELECT EMAIL FROM driver WHERE EMAIL = ?";
-                PreparedStatement stmt = con.prepareStatement(query);
-                stmt.setString(1, email);
-
-                ResultSet rs = stmt.executeQuery();
-                if (rs.next()) {
-                    runOnUiThread(() -> emailEditText.setError("Email address already exists"));
-                }
-
-                rs.close();
-                stmt.close();
-                con.close();
-            } catch (SQLException e) {
-                e.printStackTrace();
-                runOnUiThread(() -> Toast.makeText(this, "SQL Exception: " + e.getMessage(), Toast.LENGTH_SHORT).show());
-            } catch (Exception e) {
-                e.printStackTrace();
-                runOnUiThread(() -> Toast.makeText(this, "Exception: " + e.getMessage(), Toast.LENGTH_SHORT).show());
-            }
-        });
+            });
+        } catch (RejectedExecutionException e) {
+            Toast.makeText(this, "Exception: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+        }
     }
 
     private boolean validatePassword(String password) {
@@ -7,23 +7,16 @@ import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
 
-import org.mindrot.jbcrypt.BCrypt;
-
-import java.sql.Connection;
-import java.sql.PreparedStatement;
 import java.sql.SQLException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 public class ResetPasswordActivity extends AppCompatActivity {
-    ConnectionClass connectionClass;
-    Connection con;
+    DriverDao driverDao;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_reset_password);
-        connectionClass = new ConnectionClass();
+        driverDao = new DriverDao();
 
         EditText emailEditText = findViewById(R.id.etResetEmail);
         EditText newPasswordEditText = findViewById(R.id.etNewPassword);
@@ -50,25 +43,14 @@ public class ResetPasswordActivity extends AppCompatActivity {
     }
 
     private void resetPassword(String email, String newPassword) {
-        ExecutorService executorService = Executors.newSingleThreadExecutor();
-        executorService.execute(() -> {
+        DbExecutor.essential(() -> {
             try {
-                con = connectionClass.CONN(); // Establishing database connection
-                if (con == null) {
-                    runOnUiThread(() -> Toast.makeText(ResetPasswordActivity.this, "Error in connection with MySQL server", Toast.LENGTH_SHORT).show());
-                    return;
-                }
-
-                String hashedPassword = BCrypt.hashpw(newPassword, BCrypt.gensalt());
+                String hashedPassword = PasswordHasher.hash(this, newPassword);
 
                 // Update the user's password in the database
-                String query = "UPDATE driver SET PASSWORD = ? WHERE EMAIL = ?";
-                PreparedStatement stmt = con.prepareStatement(query);
-                stmt.setString(1, hashedPassword);
-                stmt.setString(2, email);
-
-                int rowsUpdated = stmt.executeUpdate();
-                if (rowsUpdated > 0) {
+                if (driverDao.updatePassword(email, hashedPassword)) {
+                    // Devices still logged in have to log in with the new password
+                    LoginSession.getInstance(this).endOtherSessions(email);
                     runOnUiThread(() -> {
                         Toast.makeText(ResetPasswordActivity.this, "Password reset successful", Toast.LENGTH_SHORT).show();
                         finish(); // Close the activity and return to the login screen
@@ -76,9 +58,6 @@ public class ResetPasswordActivity extends AppCompatActivity {
                 } else {
                     runOnUiThread(() -> Toast.makeText(ResetPasswordActivity.this, "Invalid email address", Toast.LENGTH_SHORT).show());
                 }
-
-                stmt.close();
-                con.close();
             } catch (SQLException e) {
                 e.printStackTrace();
                 runOnUiThread(() -> Toast.makeText(ResetPasswordActivity.this, "SQL Exception: " + e.getMessage(), Toast.LENGTH_SHORT).show());
@@ -0,0 +1,254 @@
+package com.example.signme;
+
+import android.util.Log;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Brings the MySQL schema up to date, one numbered step at a time.
+ *
+ * Applied steps are recorded in schema_version, so once the database is current
+ * migrate() costs a single query. A named lock keeps two devices from running the
+ * same step at once. Called from the splash screen on a background thread.
+ *
+ * Every step must be safe to run again: DDL the server finished can still go
+ * unrecorded if the client died or lost the connection before the INSERT into
+ * schema_version, and the step then runs a second time on the next launch.
+ */
+public class SchemaMigrations {
+
+    private static final String TAG = "SchemaMigrations";
+
+    private static final String LOCK_NAME = "signme_schema_migrations";
+    private static final int LOCK_TIMEOUT_SECONDS = 10;
+
+    // Legacy timestamps are "dd-MM-yyyy HH:mm:ss" text. Anything else converts to NULL
+    // instead of tripping strict mode's "Incorrect datetime value" error.
+    static String parseLegacyTime(String column) {
+        return "CASE WHEN " + column + " REGEXP '^[0-9]{2}-[0-9]{2}-[0-9]{4} [0-9]{2}:[0-9]{2}:[0-9]{2}$' " +
+                "THEN STR_TO_DATE(" + column + ", '%d-%m-%Y %H:%i:%s') END";
+    }
+
+    interface Step {
+        void apply(Connection con) throws SQLException;
+    }
+
+    // Index i is schema version i + 1. Only ever append.
+    private static final Step[] STEPS = {
+            // 1: native DATETIME copies of the text timestamps, so ordering and range
+            // scans no longer go through STR_TO_DATE
+            con -> {
+                addColumnIfMissing(con, "session", "SESSION_START_AT", "DATETIME NULL");
+                addColumnIfMissing(con, "session", "SESSION_END_AT", "DATETIME NULL");
+            },
+
+            // 2: keep them filled in for writers that still only set the text columns
+            con -> {
+                execute(con, "DROP TRIGGER IF EXISTS session_times_before_insert");
+                execute(con,
+                        "CREATE TRIGGER session_times_before_insert BEFORE INSERT ON session FOR EACH ROW SET " +
+                        "NEW.SESSION_START_AT = COALESCE(NEW.SESSION_START_AT, " + parseLegacyTime("NEW.SESSION_START_TIME") + "), " +
+                        "NEW.SESSION_END_AT = COALESCE(NEW.SESSION_END_AT, " + parseLegacyTime("NEW.SESSION_END_TIME") + ")");
+                execute(con, "DROP TRIGGER IF EXISTS session_times_before_update");
+                execute(con,
+                        "CREATE TRIGGER session_times_before_update BEFORE UPDATE ON session FOR EACH ROW SET " +
+                        "NEW.SESSION_START_AT = IF(NEW.SESSION_START_TIME <=> OLD.SESSION_START_TIME, NEW.SESSION_START_AT, " +
+                        parseLegacyTime("NEW.SESSION_START_TIME") + "), " +
+                        "NEW.SESSION_END_AT = IF(NEW.SESSION_END_TIME <=> OLD.SESSION_END_TIME, NEW.SESSION_END_AT, " +
+                        parseLegacyTime("NEW.SESSION_END_TIME") + ")");
+            },
+
+            // 3: convert the rows written before step 1
+            con -> SessionTimestampBackfill.run(con, SessionTimestampBackfill.DEFAULT_BATCH_SIZE),
+
+            // 4: serves "a driver's sessions in start-time order" straight from the index,
+            // including the (start time, id) keyset used for paging
+            con -> addIndexIfMissing(con, "session", "idx_session_email_start", "EMAIL, SESSION_START_AT, SESSION_ID"),
+
+            // 5: interned place names, see LocationDao
+            con -> execute(con,
+                    "CREATE TABLE IF NOT EXISTS location (" +
+                    "LOCATION_ID INT AUTO_INCREMENT PRIMARY KEY, " +
+                    "NAME VARCHAR(255) NOT NULL, " +
+                    "NORMALIZED_NAME VARCHAR(255) NOT NULL, " +
+                    "UNIQUE KEY uq_location_normalized_name (NORMALIZED_NAME))"),
+
+            // 6: sessions reference locations by id; the free-text columns stay for older readers
+            con -> {
+                addColumnIfMissing(con, "session", "START_LOCATION_ID", "INT NULL");
+                addColumnIfMissing(con, "session", "DESTINATION_ID", "INT NULL");
+                addIndexIfMissing(con, "session", "idx_session_route", "START_LOCATION_ID, DESTINATION_ID");
+            },
+
+            // 7: intern the names already in the session table
+            LocationDao::internExisting,
+
+            // 8: monthly partitions on SESSION_START_AT, see SessionPartitionMaintenance.
+            // The column becomes NOT NULL, so unparseable legacy text now falls back to
+            // the insert time instead of leaving it empty. Partitioning is only an
+            // optimisation: if this schema can't be partitioned (e.g. foreign keys point
+            // at session) the table is left as it was and later steps still run.
+            con -> {
+                execute(con, "DROP TRIGGER IF EXISTS session_times_before_insert");
+                execute(con,
+                        "CREATE TRIGGER session_times_before_insert BEFORE INSERT ON session FOR EACH ROW SET " +
+                        "NEW.SESSION_START_AT = COALESCE(NEW.SESSION_START_AT, " + parseLegacyTime("NEW.SESSION_START_TIME") + ", NOW()), " +
+                        "NEW.SESSION_END_AT = COALESCE(NEW.SESSION_END_AT, " + parseLegacyTime("NEW.SESSION_END_TIME") + ")");
+                try {
+                    SessionPartitionMaintenance.partitionTable(con);
+                } catch (SQLException e) {
+                    Log.w(TAG, "Leaving session unpartitioned: " + e.getMessage());
+                }
+            },
+
+            // 9: profile pictures as fixed-size variants keyed by content hash, see
+            // ProfileImageDao. driver.PROFILE_PICTURE is emptied as each driver's picture
+            // is converted.
+            con -> {
+                execute(con,
+                        "CREATE TABLE IF NOT EXISTS profile_image (" +
+                        "EMAIL VARCHAR(255) NOT NULL, " +
+                        "CONTENT_HASH CHAR(64) NOT NULL, " +
+                        "SIZE_PX SMALLINT NOT NULL, " +
+                        "IMAGE MEDIUMBLOB NOT NULL, " +
+                        "CREATED_AT DATETIME NOT NULL, " +
+                        "PRIMARY KEY (EMAIL, CONTENT_HASH, SIZE_PX))");
+                addColumnIfMissing(con, "driver", "PROFILE_IMAGE_HASH", "CHAR(64) NULL");
+            },
+
+            // 10: row version for optimistic profile edits, see DriverDao.updateDetails()
+            con -> addColumnIfMissing(con, "driver", "VERSION", "INT NOT NULL DEFAULT 0"),
+
+            // 11: remembered logins, see LoginSession
+            con -> execute(con,
+                    "CREATE TABLE IF NOT EXISTS login_session (" +
+                    "TOKEN_HASH CHAR(64) NOT NULL PRIMARY KEY, " +
+                    "EMAIL VARCHAR(255) NOT NULL, " +
+                    "CREATED_AT DATETIME NOT NULL, " +
+                    "EXPIRES_AT DATETIME NOT NULL, " +
+                    "LAST_SEEN_AT DATETIME NOT NULL, " +
+                    "KEY idx_login_session_email (EMAIL))"),
+
+            // 12: when each row reached the server, so sync can follow insertion order
+            // rather than start time; see SessionHistoryMirror.sync(). Rows from before
+            // this step stay NULL.
+            con -> {
+                addColumnIfMissing(con, "session", "INSERTED_AT", "DATETIME(3) NULL");
+                execute(con, "ALTER TABLE session MODIFY INSERTED_AT DATETIME(3) NULL DEFAULT CURRENT_TIMESTAMP(3)");
+                addIndexIfMissing(con, "session", "idx_session_email_inserted", "EMAIL, INSERTED_AT, SESSION_ID");
+            },
+
+            // 13: one row per install, handing out session id node ids; see DeviceDao
+            con -> execute(con,
+                    "CREATE TABLE IF NOT EXISTS device (" +
+                    "DEVICE_ID BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+                    "REGISTERED_AT DATETIME NOT NULL)"),
+
+            // 14: each install's calibrated BCrypt cost, so hashes use one cost that every
+            // recently active install can verify; see PasswordHasher
+            con -> {
+                addColumnIfMissing(con, "device", "BCRYPT_COST", "TINYINT NULL");
+                addColumnIfMissing(con, "device", "COST_REPORTED_AT", "DATETIME NULL");
+            },
+    };
+
+    // Applies any steps this database hasn't seen yet. Failures are logged, not thrown.
+    public static void migrate() {
+        Connection con;
+        try {
+            con = ConnectionClass.openMaintenanceConnection();
+        } catch (SQLException e) {
+            Log.e(TAG, "Error in connection with MySQL server: " + e.getMessage());
+            return;
+        }
+        try {
+            execute(con, "CREATE TABLE IF NOT EXISTS schema_version (" +
+                    "VERSION INT PRIMARY KEY, " +
+                    "APPLIED_AT DATETIME NOT NULL)");
+            if (currentVersion(con) >= STEPS.length) {
+                return;
+            }
+            if (!acquireLock(con)) {
+                Log.w(TAG, "Another client is migrating the schema, skipping");
+                return;
+            }
+            try {
+                // Re-read under the lock in case another client just finished
+                for (int version = currentVersion(con) + 1; version <= STEPS.length; version++) {
+                    Log.i(TAG, "Applying schema version " + version);
+                    STEPS[version - 1].apply(con);
+                    try (PreparedStatement stmt = con.prepareStatement(
+                            "INSERT INTO schema_version (VERSION, APPLIED_AT) VALUES (?, NOW())")) {
+                        stmt.setInt(1, version);
+                        stmt.executeUpdate();
+                    }
+                }
+            } finally {
+                execute(con, "DO RELEASE_LOCK('" + LOCK_NAME + "')");
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        } finally {
+            try {
+                con.close();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static int currentVersion(Connection con) throws SQLException {
+        try (Statement stmt = con.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(VERSION), 0) FROM schema_version")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private static boolean acquireLock(Connection con) throws SQLException {
+        try (Statement stmt = con.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT GET_LOCK('" + LOCK_NAME + "', " + LOCK_TIMEOUT_SECONDS + ")")) {
+            return rs.next() && rs.getInt(1) == 1;
+        }
+    }
+
+    private static void addColumnIfMissing(Connection con, String table, String column, String definition)
+            throws SQLException {
+        if (!exists(con, "SELECT 1 FROM INFORMATION_SCHEMA.COLUMNS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND COLUMN_NAME = ?", table, column)) {
+            execute(con, "ALTER TABLE " + table + " ADD COLUMN " + column + " " + definition);
+        }
+    }
+
+    private static void addIndexIfMissing(Connection con, String table, String index, String columns)
+            throws SQLException {
+        if (!exists(con, "SELECT 1 FROM INFORMATION_SCHEMA.STATISTICS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND INDEX_NAME = ?", table, index)) {
+            execute(con, "ALTER TABLE " + table + " ADD INDEX " + index + " (" + columns + ")");
+        }
+    }
+
+    private static boolean exists(Connection con, String sql, String... args) throws SQLException {
+        try (PreparedStatement stmt = con.prepareStatement(sql)) {
+            for (int i = 0; i < args.length; i++) {
+                stmt.setString(i + 1, args[i]);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    // Runs DDL or a bulk update. These can legitimately take longer than the pool's
+    // per-query timeout, so it is lifted for them.
+    static void execute(Connection con, String sql) throws SQLException {
+        try (Statement stmt = con.createStatement()) {
+            stmt.setQueryTimeout(0);
+            stmt.execute(sql);
+        }
+    }
+}
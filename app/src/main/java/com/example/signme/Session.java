@@ -0,0 +1,55 @@
+package com.example.signme;
+
+import java.sql.Timestamp;
+
+// A row of the session table: one drive from START_LOCATION to DESTINATION
+public class Session {
+
+    private final String sessionId;
+    private final String email;
+    private final String startLocation;
+    private final String destination;
+    private final String vehicleType;
+    private final Timestamp startTime;
+    // Null while the drive is still in progress
+    private final Timestamp endTime;
+
+    public Session(String sessionId, String email, String startLocation, String destination,
+                   String vehicleType, Timestamp startTime, Timestamp endTime) {
+        this.sessionId = sessionId;
+        this.email = email;
+        this.startLocation = startLocation;
+        this.destination = destination;
+        this.vehicleType = vehicleType;
+        this.startTime = startTime;
+        this.endTime = endTime;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public String getStartLocation() {
+        return startLocation;
+    }
+
+    public String getDestination() {
+        return destination;
+    }
+
+    public String getVehicleType() {
+        return vehicleType;
+    }
+
+    public Timestamp getStartTime() {
+        return startTime;
+    }
+
+    public Timestamp getEndTime() {
+        return endTime;
+    }
+}
@@ -0,0 +1,344 @@
+package com.example.signme;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Owns every query against the session table; see DriverDao for how statements are cached
+public class SessionDao {
+
+    private static final String COLUMNS =
+            "SELECT SESSION_ID, START_LOCATION, DESTINATION, VEHICLE_TYPE, SESSION_START_AT, SESSION_END_AT " +
+            "FROM session ";
+    // Insertion order, served by idx_session_email_inserted (EMAIL, INSERTED_AT, SESSION_ID)
+    private static final String SELECT_INSERTED_AFTER =
+            "SELECT SESSION_ID, START_LOCATION, DESTINATION, VEHICLE_TYPE, SESSION_START_AT, SESSION_END_AT, INSERTED_AT " +
+            "FROM session " +
+            "WHERE EMAIL = ? AND (INSERTED_AT > ? OR (INSERTED_AT = ? AND SESSION_ID > ?)) " +
+            "ORDER BY INSERTED_AT, SESSION_ID " +
+            "LIMIT ?";
+    private static final String SELECT_LAST_INSERTED_AT =
+            "SELECT MAX(INSERTED_AT) FROM session WHERE EMAIL = ?";
+    // The range scans and orderings below are served by idx_session_email_start
+    // (EMAIL, SESSION_START_AT, SESSION_ID); see SchemaMigrations
+    // Keyset pagination, newest first: the first page, then pages strictly before a (start time, id) key
+    private static final String SELECT_FIRST_PAGE =
+            COLUMNS +
+            "WHERE EMAIL = ? " +
+            "ORDER BY SESSION_START_AT DESC, SESSION_ID DESC " +
+            "LIMIT ?";
+    private static final String SELECT_PAGE_BEFORE =
+            COLUMNS +
+            "WHERE EMAIL = ? AND (SESSION_START_AT < ? OR (SESSION_START_AT = ? AND SESSION_ID < ?)) " +
+            "ORDER BY SESSION_START_AT DESC, SESSION_ID DESC " +
+            "LIMIT ?";
+    private static final String SELECT_ALL_FOR_EXPORT =
+            COLUMNS +
+            "WHERE EMAIL = ? " +
+            "ORDER BY SESSION_START_AT, SESSION_ID";
+    private static final String COUNT_FOR_EMAIL =
+            "SELECT COUNT(*) FROM session WHERE EMAIL = ?";
+    private static final String SELECT_BY_IDS =
+            COLUMNS +
+            "WHERE EMAIL = ? AND SESSION_ID IN ";
+    private static final String SELECT_OWNERS_BY_IDS =
+            "SELECT SESSION_ID, EMAIL FROM session WHERE SESSION_ID IN ";
+    // SESSION_START_TIME is still written as "dd-MM-yyyy HH:mm:ss" text for older readers.
+    // Re-inserting a SESSION_ID that already landed is a no-op, so retries are safe; see
+    // insertAll() for an ID that landed for someone else.
+    private static final String INSERT =
+            "INSERT INTO session (EMAIL, SESSION_ID, START_LOCATION, DESTINATION, VEHICLE_TYPE, SESSION_START_AT, SESSION_START_TIME, " +
+            "START_LOCATION_ID, DESTINATION_ID) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE SESSION_ID = SESSION_ID";
+    private static final String LEGACY_TIME_FORMAT = "dd-MM-yyyy HH:mm:ss";
+
+    public interface SessionCallback {
+        void onSession(Session session) throws IOException;
+    }
+
+    // Sessions in the order they reached the server, and the key to continue after
+    public static class InsertedPage {
+        public final List<Session> sessions = new ArrayList<>();
+        // Of the last session, or 0 and null if the page is empty
+        public long lastInsertedMillis;
+        public String lastSessionId;
+    }
+
+    // Thrown by insertAll() when a SESSION_ID already belongs to another driver. Giving
+    // the session a new id fixes it; sending it again as it is never will.
+    public static class SessionIdTakenException extends SQLIntegrityConstraintViolationException {
+        public final String sessionId;
+
+        SessionIdTakenException(String sessionId) {
+            super("Session id " + sessionId + " already belongs to another driver", "23000");
+            this.sessionId = sessionId;
+        }
+    }
+
+    private final ConnectionClass connectionClass = new ConnectionClass();
+    private final LocationDao locationDao = new LocationDao();
+
+    /**
+     * Returns up to limit sessions that reached the server after the (INSERTED_AT,
+     * session id) key, in insertion order, so a caller can advance its watermark as it
+     * goes. A session queued offline for days still comes after everything that was
+     * inserted before it, whatever its start time.
+     */
+    public InsertedPage findInsertedAfter(String email, long afterInsertedMillis, String afterSessionId, int limit)
+            throws SQLException {
+        Connection con = connectionClass.READ_CONN();
+        if (con == null) {
+            throw new SQLException("Error in connection with MySQL server");
+        }
+        try (PreparedStatement stmt = con.prepareStatement(SELECT_INSERTED_AFTER)) {
+            Timestamp after = new Timestamp(afterInsertedMillis);
+            stmt.setString(1, email);
+            stmt.setTimestamp(2, after);
+            stmt.setTimestamp(3, after);
+            stmt.setString(4, afterSessionId);
+            stmt.setInt(5, limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                InsertedPage page = new InsertedPage();
+                while (rs.next()) {
+                    page.sessions.add(readSession(rs, email));
+                    page.lastInsertedMillis = rs.getTimestamp("INSERTED_AT").getTime();
+                    page.lastSessionId = rs.getString("SESSION_ID");
+                }
+                return page;
+            }
+        } finally {
+            con.close();
+        }
+    }
+
+    // INSERTED_AT of the driver's most recently inserted session, or 0 if there is none
+    public long findLastInsertedMillis(String email) throws SQLException {
+        Connection con = connectionClass.READ_CONN();
+        if (con == null) {
+            throw new SQLException("Error in connection with MySQL server");
+        }
+        try (PreparedStatement stmt = con.prepareStatement(SELECT_LAST_INSERTED_AT)) {
+            stmt.setString(1, email);
+            try (ResultSet rs = stmt.executeQuery()) {
+                Timestamp last = rs.next() ? rs.getTimestamp(1) : null;
+                return last == null ? 0 : last.getTime();
+            }
+        } finally {
+            con.close();
+        }
+    }
+
+    /**
+     * Returns one page of sessions, newest first. Pass a null beforeSessionId for the
+     * first page, otherwise the key of the last session on the previous page.
+     */
+    public List<Session> findPage(String email, long beforeStartMillis, String beforeSessionId, int limit) throws SQLException {
+        Connection con = connectionClass.READ_CONN();
+        if (con == null) {
+            throw new SQLException("Error in connection with MySQL server");
+        }
+        try (PreparedStatement stmt = con.prepareStatement(beforeSessionId == null ? SELECT_FIRST_PAGE : SELECT_PAGE_BEFORE)) {
+            stmt.setString(1, email);
+            if (beforeSessionId == null) {
+                stmt.setInt(2, limit);
+            } else {
+                Timestamp before = new Timestamp(beforeStartMillis);
+                stmt.setTimestamp(2, before);
+                stmt.setTimestamp(3, before);
+                stmt.setString(4, beforeSessionId);
+                stmt.setInt(5, limit);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                return readSessions(rs, email);
+            }
+        } finally {
+            con.close();
+        }
+    }
+
+    public int countForEmail(String email) throws SQLException {
+        Connection con = connectionClass.READ_CONN();
+        if (con == null) {
+            throw new SQLException("Error in connection with MySQL server");
+        }
+        try (PreparedStatement stmt = con.prepareStatement(COUNT_FOR_EMAIL)) {
+            stmt.setString(1, email);
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        } finally {
+            con.close();
+        }
+    }
+
+    /**
+     * Hands every session of the driver to callback, oldest first, without holding them
+     * in memory: the result set is forward-only with a fetch size of Integer.MIN_VALUE,
+     * which makes the MySQL driver stream rows off the socket one at a time.
+     * The connection is busy until the last row is read, so keep callback quick.
+     */
+    public void streamAll(String email, SessionCallback callback) throws SQLException, IOException {
+        Connection con = connectionClass.READ_CONN();
+        if (con == null) {
+            throw new SQLException("Error in connection with MySQL server");
+        }
+        try (PreparedStatement stmt = con.prepareStatement(SELECT_ALL_FOR_EXPORT,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            stmt.setFetchSize(Integer.MIN_VALUE);
+            stmt.setQueryTimeout(0); // Runs as long as the export does
+            stmt.setString(1, email);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    callback.onSession(readSession(rs, email));
+                }
+            }
+        } finally {
+            con.close();
+        }
+    }
+
+    // Re-reads specific sessions, e.g. ones that had no end time when they were last synced
+    public List<Session> findByIds(String email, List<String> sessionIds) throws SQLException {
+        if (sessionIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        StringBuilder query = new StringBuilder(SELECT_BY_IDS).append('(');
+        for (int i = 0; i < sessionIds.size(); i++) {
+            query.append(i == 0 ? "?" : ", ?");
+        }
+        query.append(')');
+
+        Connection con = connectionClass.READ_CONN();
+        if (con == null) {
+            throw new SQLException("Error in connection with MySQL server");
+        }
+        try (PreparedStatement stmt = con.prepareStatement(query.toString())) {
+            stmt.setString(1, email);
+            for (int i = 0; i < sessionIds.size(); i++) {
+                stmt.setString(i + 2, sessionIds.get(i));
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                return readSessions(rs, email);
+            }
+        } finally {
+            con.close();
+        }
+    }
+
+    /**
+     * Inserts the sessions in one transaction, as a single JDBC batch (which the driver
+     * rewrites into a multi-row INSERT). Sessions that already exist are skipped.
+     *
+     * If any SESSION_ID turns out to be another driver's (two devices generated the same
+     * one, see SessionIdGenerator) nothing is inserted and this throws
+     * SessionIdTakenException, rather than the session being silently dropped or
+     * stored twice.
+     */
+    public void insertAll(List<Session> sessions) throws SQLException {
+        if (sessions.isEmpty()) {
+            return;
+        }
+        Connection con = connectionClass.CONN();
+        if (con == null) {
+            throw new SQLException("Error in connection with MySQL server");
+        }
+        try (PreparedStatement stmt = con.prepareStatement(INSERT)) {
+            SimpleDateFormat legacyFormat = new SimpleDateFormat(LEGACY_TIME_FORMAT, Locale.US);
+            con.setAutoCommit(false);
+
+            List<String> places = new ArrayList<>();
+            for (Session session : sessions) {
+                places.add(session.getStartLocation());
+                places.add(session.getDestination());
+            }
+            Map<String, Integer> locationIds = locationDao.resolveIds(con, places);
+
+            for (Session session : sessions) {
+                stmt.setString(1, session.getEmail());
+                stmt.setString(2, session.getSessionId());
+                stmt.setString(3, session.getStartLocation());
+                stmt.setString(4, session.getDestination());
+                stmt.setString(5, session.getVehicleType());
+                stmt.setTimestamp(6, session.getStartTime());
+                stmt.setString(7, legacyFormat.format(session.getStartTime()));
+                setLocationId(stmt, 8, locationIds, session.getStartLocation());
+                setLocationId(stmt, 9, locationIds, session.getDestination());
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+            checkOwners(con, sessions);
+            con.commit();
+            locationDao.remember(locationIds);
+        } finally {
+            con.close(); // The pool rolls back and restores auto-commit if we didn't get to commit
+        }
+    }
+
+    private static void checkOwners(Connection con, List<Session> sessions) throws SQLException {
+        StringBuilder query = new StringBuilder(SELECT_OWNERS_BY_IDS).append('(');
+        for (int i = 0; i < sessions.size(); i++) {
+            query.append(i == 0 ? "?" : ", ?");
+        }
+        query.append(')');
+
+        Map<String, String> emails = new HashMap<>();
+        for (Session session : sessions) {
+            emails.put(session.getSessionId(), session.getEmail());
+        }
+        try (PreparedStatement stmt = con.prepareStatement(query.toString())) {
+            for (int i = 0; i < sessions.size(); i++) {
+                stmt.setString(i + 1, sessions.get(i).getSessionId());
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    String sessionId = rs.getString("SESSION_ID");
+                    if (!rs.getString("EMAIL").equals(emails.get(sessionId))) {
+                        throw new SessionIdTakenException(sessionId);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void setLocationId(PreparedStatement stmt, int index, Map<String, Integer> locationIds,
+                                      String name) throws SQLException {
+        Integer id = locationIds.get(LocationDao.normalize(name));
+        if (id != null) {
+            stmt.setInt(index, id);
+        } else {
+            stmt.setNull(index, Types.INTEGER);
+        }
+    }
+
+    private static List<Session> readSessions(ResultSet rs, String email) throws SQLException {
+        List<Session> sessions = new ArrayList<>();
+        while (rs.next()) {
+            sessions.add(readSession(rs, email));
+        }
+        return sessions;
+    }
+
+    private static Session readSession(ResultSet rs, String email) throws SQLException {
+        return new Session(
+                rs.getString("SESSION_ID"),
+                email,
+                rs.getString("START_LOCATION"),
+                rs.getString("DESTINATION"),
+                rs.getString("VEHICLE_TYPE"),
+                rs.getTimestamp("SESSION_START_AT"),
+                rs.getTimestamp("SESSION_END_AT"));
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.signme;
+
+import android.content.Context;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Exports a driver's full session history to a file in app storage.
+ *
+ * Rows are streamed from MySQL (see SessionDao.streamAll()) and written through a
+ * fixed-size buffer onto a FileChannel as they arrive, so memory use is the same for
+ * a hundred sessions as for a million. The file is written under a temporary name
+ * and only renamed into place once complete.
+ */
+public class SessionExporter {
+
+    public enum Format {
+        // One header line, then one line per session
+        CSV("csv"),
+        // "SMEX", a format version int, then per session: session id, start location,
+        // destination, vehicle type (writeUTF each), start and end millis (end -1 if open)
+        BINARY("bin");
+
+        final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+    }
+
+    public interface ProgressListener {
+        // Called on the exporting thread every PROGRESS_INTERVAL rows and at the end
+        void onProgress(int written, int total);
+    }
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int PROGRESS_INTERVAL = 500;
+    private static final int BINARY_FORMAT_VERSION = 1;
+
+    private final Context context;
+    private final SessionDao sessionDao = new SessionDao();
+
+    public SessionExporter(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    // Blocks until the export is written; call it from a DbExecutor task
+    public File export(String email, Format format, ProgressListener listener) throws SQLException, IOException {
+        File base = context.getExternalFilesDir(null);
+        File dir = new File(base != null ? base : context.getFilesDir(), "exports");
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Can't create " + dir);
+        }
+        String stamp = new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.US).format(new Date());
+        File target = new File(dir, "history-" + stamp + "." + format.extension);
+        File partial = new File(dir, target.getName() + ".part");
+
+        int total = sessionDao.countForEmail(email);
+        int[] written = {0};
+        listener.onProgress(0, total);
+
+        boolean complete = false;
+        try (FileOutputStream file = new FileOutputStream(partial);
+             FileChannel channel = file.getChannel();
+             OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE)) {
+            RowWriter rowWriter = format == Format.CSV ? new CsvWriter(out) : new BinaryWriter(out);
+            rowWriter.writeHeader();
+            sessionDao.streamAll(email, session -> {
+                rowWriter.write(session);
+                written[0]++;
+                if (written[0] % PROGRESS_INTERVAL == 0) {
+                    // More rows may have arrived since the count was taken
+                    listener.onProgress(written[0], Math.max(total, written[0]));
+                }
+            });
+            out.flush();
+            channel.force(false);
+            complete = true;
+        } finally {
+            if (!complete) {
+                partial.delete();
+            }
+        }
+
+        if (!partial.renameTo(target)) {
+            partial.delete();
+            throw new IOException("Can't move export into place: " + target);
+        }
+        listener.onProgress(written[0], written[0]);
+        return target;
+    }
+
+    private interface RowWriter {
+        void writeHeader() throws IOException;
+
+        void write(Session session) throws IOException;
+    }
+
+    private static class CsvWriter implements RowWriter {
+        private final OutputStream out;
+        private final SimpleDateFormat timeFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US);
+        private final StringBuilder line = new StringBuilder(256);
+
+        CsvWriter(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void writeHeader() throws IOException {
+            out.write("session_id,start_location,destination,vehicle_type,start_time,end_time,duration_minutes\n"
+                    .getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void write(Session session) throws IOException {
+            Timestamp start = session.getStartTime();
+            Timestamp end = session.getEndTime();
+            line.setLength(0);
+            appendField(session.getSessionId()).append(',');
+            appendField(session.getStartLocation()).append(',');
+            appendField(session.getDestination()).append(',');
+            appendField(session.getVehicleType()).append(',');
+            line.append(start == null ? "" : timeFormat.format(start)).append(',');
+            line.append(end == null ? "" : timeFormat.format(end)).append(',');
+            if (start != null && end != null) {
+                line.append((end.getTime() - start.getTime()) / (60 * 1000));
+            }
+            line.append('\n');
+            out.write(line.toString().getBytes(StandardCharsets.UTF_8));
+        }
+
+        // Quotes the value if it contains a separator, quote or line break
+        private StringBuilder appendField(String value) {
+            if (value == null) {
+                return line;
+            }
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+                return line.append(value);
+            }
+            return line.append('"').append(value.replace("\"", "\"\"")).append('"');
+        }
+    }
+
+    private static class BinaryWriter implements RowWriter {
+        private final DataOutputStream out;
+
+        BinaryWriter(OutputStream out) {
+            this.out = new DataOutputStream(out);
+        }
+
+        @Override
+        public void writeHeader() throws IOException {
+            out.writeBytes("SMEX");
+            out.writeInt(BINARY_FORMAT_VERSION);
+        }
+
+        @Override
+        public void write(Session session) throws IOException {
+            out.writeUTF(nullToEmpty(session.getSessionId()));
+            out.writeUTF(nullToEmpty(session.getStartLocation()));
+            out.writeUTF(nullToEmpty(session.getDestination()));
+            out.writeUTF(nullToEmpty(session.getVehicleType()));
+            out.writeLong(session.getStartTime() == null ? -1 : session.getStartTime().getTime());
+            out.writeLong(session.getEndTime() == null ? -1 : session.getEndTime().getTime());
+        }
+
+        private static String nullToEmpty(String value) {
+            return value == null ? "" : value;
+        }
+    }
+}
@@ -0,0 +1,327 @@
+package com.example.signme;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * On-device copy of a driver's session history.
+ *
+ * History renders straight from here, then sync() pulls only the sessions that reached
+ * the server after the last synced INSERTED_AT watermark, so a refresh costs
+ * O(new sessions) instead of re-downloading everything. Works offline.
+ *
+ * Older history is paged in from the server with keyset pagination, as the user
+ * scrolls (fetchOlder()) or all at once in the background (backfill()), so a first
+ * sync only downloads one page but search eventually covers the whole history.
+ */
+public class SessionHistoryMirror {
+
+    public static final int DEFAULT_PAGE_SIZE = 30;
+
+    // backfill() isn't waiting on a screen, so it pages in bigger batches
+    private static final int BACKFILL_PAGE_SIZE = 200;
+
+    // sync() and paging both read the driver's sync state and write it back, so two
+    // screens (or a refresh and a backfill) must not do so at once
+    private static final Object SYNC_STATE_LOCK = new Object();
+
+    // Sessions without an end time are re-read on each sync; cap how many we chase
+    private static final int MAX_OPEN_SESSIONS_TO_REFRESH = 20;
+
+    // Each sync re-reads this far behind its watermark: a row stamped just before a
+    // sync can still be committing while it reads, and would otherwise be passed over
+    private static final long INSERT_LOOKBACK_MS = 10 * 1000;
+
+    private final LocalDatabaseHelper dbHelper;
+    private final SessionDao sessionDao = new SessionDao();
+    private final int pageSize;
+
+    public SessionHistoryMirror(Context context) {
+        this(context, DEFAULT_PAGE_SIZE);
+    }
+
+    public SessionHistoryMirror(Context context, int pageSize) {
+        this.dbHelper = LocalDatabaseHelper.getInstance(context);
+        this.pageSize = pageSize;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Returns one page of locally mirrored sessions, most recent first. Pass null for
+     * the first page, otherwise the id of the last session on the previous page.
+     */
+    public List<Session> loadPage(String email, String afterSessionId) {
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        String selection;
+        String[] selectionArgs;
+        if (afterSessionId == null) {
+            selection = "email = ?";
+            selectionArgs = new String[]{email};
+        } else {
+            String keyMillis = "(SELECT start_millis FROM " + LocalDatabaseHelper.TABLE_SESSION_MIRROR + " WHERE session_id = ?)";
+            selection = "email = ? AND (start_millis < " + keyMillis
+                    + " OR (start_millis = " + keyMillis + " AND session_id < ?))";
+            selectionArgs = new String[]{email, afterSessionId, afterSessionId, afterSessionId};
+        }
+
+        List<Session> sessions = new ArrayList<>();
+        try (Cursor cursor = db.query(LocalDatabaseHelper.TABLE_SESSION_MIRROR,
+                new String[]{"session_id", "start_location", "destination", "vehicle_type", "start_millis", "end_millis"},
+                selection, selectionArgs,
+                null, null, "start_millis DESC, session_id DESC", String.valueOf(pageSize))) {
+            while (cursor.moveToNext()) {
+                sessions.add(new Session(
+                        cursor.getString(0),
+                        email,
+                        cursor.getString(1),
+                        cursor.getString(2),
+                        cursor.getString(3),
+                        new Timestamp(cursor.getLong(4)),
+                        cursor.isNull(5) ? null : new Timestamp(cursor.getLong(5))));
+            }
+        }
+        return sessions;
+    }
+
+    /**
+     * Full-text search over the mirrored sessions' place names and start dates, most
+     * recent first. Every word in query is matched as a prefix, so "anu jun" finds
+     * "Anuradhapura New Town - Jaffna Junction". Local only; no server round trip.
+     */
+    public List<Session> search(String email, String query, int limit) {
+        String match = toMatchExpression(query);
+        List<Session> sessions = new ArrayList<>();
+        if (match.isEmpty()) {
+            return sessions;
+        }
+        try (Cursor cursor = dbHelper.getReadableDatabase().rawQuery(
+                "SELECT m.session_id, m.start_location, m.destination, m.vehicle_type, m.start_millis, m.end_millis " +
+                "FROM " + LocalDatabaseHelper.TABLE_SESSION_SEARCH + " s " +
+                "JOIN " + LocalDatabaseHelper.TABLE_SESSION_MIRROR + " m ON m.id = s.docid " +
+                "WHERE " + LocalDatabaseHelper.TABLE_SESSION_SEARCH + " MATCH ? AND m.email = ? " +
+                "ORDER BY m.start_millis DESC, m.session_id DESC LIMIT ?",
+                new String[]{match, email, String.valueOf(limit)})) {
+            while (cursor.moveToNext()) {
+                sessions.add(new Session(
+                        cursor.getString(0),
+                        email,
+                        cursor.getString(1),
+                        cursor.getString(2),
+                        cursor.getString(3),
+                        new Timestamp(cursor.getLong(4)),
+                        cursor.isNull(5) ? null : new Timestamp(cursor.getLong(5))));
+            }
+        }
+        return sessions;
+    }
+
+    /**
+     * Pulls new sessions (and any still-open ones) from MySQL into the mirror. The
+     * first sync for a driver only pulls their newest page; older ones are paged in by
+     * fetchOlder(). Returns how many rows were added or changed, counting the few
+     * recent ones that are re-read each time.
+     */
+    public int sync(String email) throws SQLException {
+        synchronized (SYNC_STATE_LOCK) {
+            SQLiteDatabase db = dbHelper.getWritableDatabase();
+            SyncState state = readState(db, email);
+
+            if (state == null) {
+                state = new SyncState();
+                // Read first: anything inserted after it is pulled by the next sync
+                state.lastInsertedMillis = sessionDao.findLastInsertedMillis(email);
+                List<Session> firstPage = sessionDao.findPage(email, 0, null, pageSize);
+                state.historyComplete = firstPage.size() < pageSize;
+                state.includeAll(firstPage);
+                save(db, email, firstPage, state);
+                return firstPage.size();
+            }
+
+            int changed = 0;
+            long afterMillis = Math.max(0, state.lastInsertedMillis - INSERT_LOOKBACK_MS);
+            String afterSessionId = "";
+            SessionDao.InsertedPage batch;
+            do {
+                // Bounded batches in insertion order, so the watermark advances as each one lands
+                batch = sessionDao.findInsertedAfter(email, afterMillis, afterSessionId, pageSize);
+                if (!batch.sessions.isEmpty()) {
+                    afterMillis = batch.lastInsertedMillis;
+                    afterSessionId = batch.lastSessionId;
+                    state.lastInsertedMillis = Math.max(state.lastInsertedMillis, afterMillis);
+                }
+                save(db, email, batch.sessions, state);
+                changed += batch.sessions.size();
+            } while (batch.sessions.size() == pageSize);
+
+            List<Session> finished = new ArrayList<>();
+            for (Session session : sessionDao.findByIds(email, findOpenSessionIds(db, email))) {
+                if (session.getEndTime() != null) {
+                    finished.add(session); // Finished since the last sync
+                }
+            }
+            save(db, email, finished, state);
+
+            changed += finished.size();
+            if (changed > 0) {
+                TripStatisticsStore.getInstance().invalidate(email);
+            }
+            return changed;
+        }
+    }
+
+    /**
+     * Pages the next-older batch of sessions in from MySQL. Returns how many rows were
+     * added; 0 once the start of the driver's history has been reached.
+     */
+    public int fetchOlder(String email) throws SQLException {
+        return fetchOlder(email, pageSize);
+    }
+
+    /**
+     * Pages in the rest of the driver's history, so search covers all of it rather than
+     * just what has been scrolled through. Stops early if the thread is interrupted;
+     * each batch is saved as it arrives, so a later call carries on where this stopped.
+     * Returns how many rows were added.
+     */
+    public int backfill(String email) throws SQLException {
+        int total = 0;
+        int added;
+        do {
+            added = fetchOlder(email, BACKFILL_PAGE_SIZE);
+            total += added;
+        } while (added > 0 && !Thread.currentThread().isInterrupted());
+        return total;
+    }
+
+    // False until paging has reached the start of the driver's history (or before the first sync)
+    public boolean isHistoryComplete(String email) {
+        SyncState state = readState(dbHelper.getReadableDatabase(), email);
+        return state != null && state.historyComplete;
+    }
+
+    private int fetchOlder(String email, int limit) throws SQLException {
+        synchronized (SYNC_STATE_LOCK) {
+            SQLiteDatabase db = dbHelper.getWritableDatabase();
+            SyncState state = readState(db, email);
+            if (state == null || state.historyComplete) {
+                return 0;
+            }
+            List<Session> page = sessionDao.findPage(email, state.oldestStartMillis, state.oldestSessionId, limit);
+            state.historyComplete = page.size() < limit;
+            state.includeAll(page);
+            save(db, email, page, state);
+            return page.size();
+        }
+    }
+
+    // Writes the sessions and the advanced watermarks in one transaction
+    private static void save(SQLiteDatabase db, String email, List<Session> sessions, SyncState state) {
+        db.beginTransaction();
+        try {
+            for (Session session : sessions) {
+                long startMillis = session.getStartTime() == null ? 0 : session.getStartTime().getTime();
+                ContentValues values = new ContentValues();
+                values.put("session_id", session.getSessionId());
+                values.put("email", email);
+                values.put("start_location", session.getStartLocation());
+                values.put("destination", session.getDestination());
+                values.put("vehicle_type", session.getVehicleType());
+                values.put("start_millis", startMillis);
+                values.put("end_millis", session.getEndTime() == null ? null : session.getEndTime().getTime());
+                // Update in place rather than REPLACE, which would give the row a new id
+                // behind the search index's back (REPLACE doesn't fire delete triggers)
+                if (db.update(LocalDatabaseHelper.TABLE_SESSION_MIRROR, values, "session_id = ?",
+                        new String[]{session.getSessionId()}) == 0) {
+                    db.insert(LocalDatabaseHelper.TABLE_SESSION_MIRROR, null, values);
+                }
+            }
+
+            ContentValues values = new ContentValues();
+            values.put("email", email);
+            values.put("last_inserted_millis", state.lastInsertedMillis);
+            values.put("oldest_start_millis", state.oldestStartMillis);
+            values.put("oldest_session_id", state.oldestSessionId);
+            values.put("history_complete", state.historyComplete ? 1 : 0);
+            db.insertWithOnConflict(LocalDatabaseHelper.TABLE_SYNC_STATE, null, values,
+                    SQLiteDatabase.CONFLICT_REPLACE);
+
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    // "Anu  jun-" -> "anu* jun*": letters and digits only, so user input can't form FTS syntax
+    static String toMatchExpression(String query) {
+        StringBuilder match = new StringBuilder();
+        for (String term : query.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{Nd}]+")) {
+            if (!term.isEmpty()) {
+                match.append(match.length() == 0 ? "" : " ").append(term).append('*');
+            }
+        }
+        return match.toString();
+    }
+
+    private static SyncState readState(SQLiteDatabase db, String email) {
+        try (Cursor cursor = db.query(LocalDatabaseHelper.TABLE_SYNC_STATE,
+                new String[]{"last_inserted_millis", "oldest_start_millis", "oldest_session_id", "history_complete"},
+                "email = ?", new String[]{email}, null, null, null)) {
+            if (!cursor.moveToFirst()) {
+                return null;
+            }
+            SyncState state = new SyncState();
+            state.lastInsertedMillis = cursor.getLong(0);
+            state.oldestStartMillis = cursor.getLong(1);
+            state.oldestSessionId = cursor.getString(2);
+            state.historyComplete = cursor.getInt(3) != 0;
+            return state;
+        }
+    }
+
+    private static List<String> findOpenSessionIds(SQLiteDatabase db, String email) {
+        List<String> ids = new ArrayList<>();
+        try (Cursor cursor = db.query(LocalDatabaseHelper.TABLE_SESSION_MIRROR,
+                new String[]{"session_id"},
+                "email = ? AND end_millis IS NULL", new String[]{email},
+                null, null, "start_millis DESC", String.valueOf(MAX_OPEN_SESSIONS_TO_REFRESH))) {
+            while (cursor.moveToNext()) {
+                ids.add(cursor.getString(0));
+            }
+        }
+        return ids;
+    }
+
+    // Server INSERTED_AT synced up to, and the oldest (start time, session id) key
+    // paged in, for one driver
+    private static class SyncState {
+        long lastInsertedMillis;
+        long oldestStartMillis = Long.MAX_VALUE;
+        String oldestSessionId;
+        boolean historyComplete;
+
+        // Only for pages that continue the history downwards. A late session that sync()
+        // pulls in can be older than this key, and mustn't move it past the gap between.
+        void includeAll(List<Session> sessions) {
+            for (Session session : sessions) {
+                long startMillis = session.getStartTime() == null ? 0 : session.getStartTime().getTime();
+                String sessionId = session.getSessionId();
+                if (oldestSessionId == null || startMillis < oldestStartMillis
+                        || (startMillis == oldestStartMillis && sessionId.compareTo(oldestSessionId) < 0)) {
+                    oldestStartMillis = startMillis;
+                    oldestSessionId = sessionId;
+                }
+            }
+        }
+    }
+}
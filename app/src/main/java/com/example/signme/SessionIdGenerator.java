@@ -0,0 +1,139 @@
+package com.example.signme;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.security.SecureRandom;
+import java.sql.SQLException;
+
+/**
+ * Generates session IDs: 64-bit, time-ordered, strictly increasing on this device.
+ *
+ * Layout, high to low: 1 unused sign bit, 41 bits of milliseconds since EPOCH_MS
+ * (good for ~69 years), 12 bits of node id, and a 10-bit sequence for IDs issued
+ * within the same millisecond. Two devices only collide if they share a node id and
+ * issue the same sequence in the same millisecond.
+ *
+ * The node id is the install's row in the device table (see DeviceDao), assigned by
+ * registerNode() the first time the server is reachable, so installs only share one
+ * once more than 4096 have registered. Until then a random one is used. Among a
+ * hundred installs on random ids a shared one is more likely than not. IDs are
+ * therefore unique per device but not guaranteed unique across devices: SessionDao
+ * refuses an ID that belongs to another driver, and SessionWriteQueue then sends the
+ * session again under a new one.
+ *
+ * IDs are written as 13 Crockford base32 characters. The alphabet is in ASCII order
+ * and the width is fixed, so the strings sort the same way as the numbers and new
+ * rows land at the end of the SESSION_ID index.
+ */
+public class SessionIdGenerator {
+
+    // 2024-01-01T00:00:00Z
+    private static final long EPOCH_MS = 1704067200000L;
+
+    private static final int NODE_BITS = 12;
+    private static final int SEQUENCE_BITS = 10;
+    private static final long MAX_NODE = (1L << NODE_BITS) - 1;
+    private static final long MAX_SEQUENCE = (1L << SEQUENCE_BITS) - 1;
+
+    private static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final int ENCODED_LENGTH = 13;
+
+    private static final String PREFS_NAME = "session_id_generator";
+    private static final String KEY_NODE_ID = "node_id";
+    private static final String KEY_DEVICE_ID = "device_id";
+    private static final String KEY_LAST_MILLIS = "last_millis";
+
+    private static SessionIdGenerator instance;
+
+    private final SharedPreferences prefs;
+    private long nodeId;
+    private long lastMillis;
+    private long sequence;
+
+    public static synchronized SessionIdGenerator getInstance(Context context) {
+        if (instance == null) {
+            instance = new SessionIdGenerator(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private SessionIdGenerator(Context context) {
+        this(context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE));
+    }
+
+    // Package-private so tests can run it on their own prefs
+    SessionIdGenerator(SharedPreferences prefs) {
+        this.prefs = prefs;
+        if (!prefs.contains(KEY_NODE_ID)) {
+            prefs.edit().putLong(KEY_NODE_ID, new SecureRandom().nextInt((int) MAX_NODE + 1)).apply();
+        }
+        nodeId = prefs.getLong(KEY_NODE_ID, 0) & MAX_NODE;
+        // Carry on from the last ID issued, even if the clock has since been set back
+        lastMillis = prefs.getLong(KEY_LAST_MILLIS, 0);
+        sequence = MAX_SEQUENCE;
+    }
+
+    /**
+     * Replaces the random node id with one assigned by the server, once per install.
+     * Blocks; call it from a DbExecutor task.
+     */
+    public void registerNode() throws SQLException {
+        if (prefs.contains(KEY_DEVICE_ID)) {
+            return;
+        }
+        long deviceId = new DeviceDao().register();
+        synchronized (this) {
+            nodeId = deviceId & MAX_NODE;
+            prefs.edit()
+                    .putLong(KEY_NODE_ID, nodeId)
+                    .putLong(KEY_DEVICE_ID, deviceId)
+                    .apply();
+        }
+    }
+
+    // This install's row in the device table, or 0 until registerNode() has succeeded
+    public long getDeviceId() {
+        return prefs.getLong(KEY_DEVICE_ID, 0);
+    }
+
+    public synchronized String next() {
+        return encode(nextId());
+    }
+
+    public synchronized long nextId() {
+        long now = currentTimeMillis() - EPOCH_MS;
+        if (now > lastMillis) {
+            lastMillis = now;
+            sequence = 0;
+        } else if (sequence < MAX_SEQUENCE) {
+            // Same millisecond, or the clock went backwards: stay on lastMillis
+            sequence++;
+        } else {
+            // Sequence exhausted; borrow the next millisecond rather than wait for it
+            lastMillis++;
+            sequence = 0;
+        }
+        prefs.edit().putLong(KEY_LAST_MILLIS, lastMillis).apply();
+        return (lastMillis << (NODE_BITS + SEQUENCE_BITS)) | (nodeId << SEQUENCE_BITS) | sequence;
+    }
+
+    // The wall clock; tests override it to set it back or hold it still
+    long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    // Milliseconds since the Unix epoch at which the ID was issued
+    public static long timestampOf(long id) {
+        return (id >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH_MS;
+    }
+
+    static String encode(long id) {
+        char[] chars = new char[ENCODED_LENGTH];
+        for (int i = ENCODED_LENGTH - 1; i >= 0; i--) {
+            chars[i] = ALPHABET[(int) (id & 31)];
+            id >>>= 5;
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,269 @@
+package com.example.signme;
+
+import android.util.Log;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Keeps the session table range-partitioned by month of SESSION_START_AT.
+ *
+ * Partitions are named p_yyyyMM and hold that month; p_legacy holds everything older
+ * than the first month and pmax catches anything past the last one. run() adds
+ * partitions for the coming months and expires the ones older than the retention
+ * window: each is swapped out into its own session_archive_* table (an O(1) metadata
+ * change) or dropped, so old data never goes through a large DELETE.
+ *
+ * Queries with a SESSION_START_AT bound, like history paging and sync, only touch
+ * the partitions that can match.
+ */
+public class SessionPartitionMaintenance {
+
+    private static final String TAG = "SessionPartitions";
+
+    // Partitions are kept this many months ahead of the current one
+    protected static int futureMonths = 3;
+
+    // Months of sessions kept in the session table; 0 keeps everything
+    protected static int retentionMonths = 24;
+
+    // Move expired partitions into session_archive_* tables instead of dropping the rows
+    protected static boolean archiveExpired = true;
+
+    private static final String LOCK_NAME = "signme_session_partitions";
+    private static final int LOCK_TIMEOUT_SECONDS = 10;
+
+    private static final String LEGACY_PARTITION = "p_legacy";
+    private static final String MAX_PARTITION = "pmax";
+    private static final String PARTITION_PREFIX = "p_";
+
+    // Start times that couldn't be parsed get this, so they land in p_legacy
+    private static final String UNKNOWN_START_TIME = "1970-01-01 00:00:00";
+
+    /**
+     * Converts the session table to monthly partitions, from the oldest session's month
+     * through futureMonths ahead. Called from SchemaMigrations; does nothing if the
+     * table is already partitioned. The key change and the partitioning are a single
+     * ALTER, so if the server refuses (e.g. foreign keys point at session) the table
+     * is left exactly as it was.
+     */
+    static void partitionTable(Connection con) throws SQLException {
+        if (!listPartitions(con, "session").isEmpty()) {
+            return;
+        }
+        // Every unique key has to include the partitioning column, which can't be NULL
+        SchemaMigrations.execute(con,
+                "UPDATE session SET SESSION_START_AT = '" + UNKNOWN_START_TIME + "' WHERE SESSION_START_AT IS NULL");
+
+        Calendar firstMonth = monthStart(System.currentTimeMillis());
+        try (Statement stmt = con.createStatement();
+             ResultSet rs = stmt.executeQuery(
+                     "SELECT MIN(SESSION_START_AT) FROM session WHERE SESSION_START_AT > '" + UNKNOWN_START_TIME + "'")) {
+            if (rs.next() && rs.getTimestamp(1) != null) {
+                firstMonth = monthStart(rs.getTimestamp(1).getTime());
+            }
+        }
+        Calendar lastMonth = monthStart(System.currentTimeMillis());
+        lastMonth.add(Calendar.MONTH, futureMonths);
+
+        StringBuilder sql = new StringBuilder("ALTER TABLE session " +
+                "MODIFY SESSION_START_AT DATETIME NOT NULL, " +
+                "DROP PRIMARY KEY, " +
+                "ADD PRIMARY KEY (SESSION_ID, SESSION_START_AT) " +
+                "PARTITION BY RANGE COLUMNS(SESSION_START_AT) (")
+                .append("PARTITION ").append(LEGACY_PARTITION)
+                .append(" VALUES LESS THAN ('").append(formatDay(firstMonth)).append("')");
+        for (Calendar month = firstMonth; !month.after(lastMonth); month = nextMonth(month)) {
+            sql.append(", ").append(monthPartition(month));
+        }
+        sql.append(", PARTITION ").append(MAX_PARTITION).append(" VALUES LESS THAN (MAXVALUE))");
+        SchemaMigrations.execute(con, sql.toString());
+    }
+
+    // Adds upcoming partitions and expires old ones. Failures are logged, not thrown.
+    public static void run() {
+        Connection con;
+        try {
+            con = ConnectionClass.openMaintenanceConnection();
+        } catch (SQLException e) {
+            Log.e(TAG, "Error in connection with MySQL server: " + e.getMessage());
+            return;
+        }
+        try {
+            if (!acquireLock(con)) {
+                return; // Another client is already on it
+            }
+            try {
+                List<String> partitions = listPartitions(con, "session");
+                if (partitions.isEmpty()) {
+                    return; // Not partitioned (yet, or the schema couldn't be, see SchemaMigrations)
+                }
+                addFuturePartitions(con, partitions);
+                if (retentionMonths > 0) {
+                    expirePartitions(con, partitions);
+                }
+            } finally {
+                SchemaMigrations.execute(con, "DO RELEASE_LOCK('" + LOCK_NAME + "')");
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        } finally {
+            try {
+                con.close();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    // Splits pmax (which should be empty) into the missing months plus a new pmax
+    private static void addFuturePartitions(Connection con, List<String> partitions) throws SQLException {
+        Calendar newest = null;
+        for (String partition : partitions) {
+            Calendar month = parseMonth(partition);
+            if (month != null && (newest == null || month.after(newest))) {
+                newest = month;
+            }
+        }
+        Calendar lastMonth = monthStart(System.currentTimeMillis());
+        lastMonth.add(Calendar.MONTH, futureMonths);
+        Calendar month = newest == null ? monthStart(System.currentTimeMillis()) : nextMonth(newest);
+        if (month.after(lastMonth)) {
+            return;
+        }
+
+        StringBuilder sql = new StringBuilder("ALTER TABLE session REORGANIZE PARTITION ")
+                .append(MAX_PARTITION).append(" INTO (");
+        for (; !month.after(lastMonth); month = nextMonth(month)) {
+            sql.append(monthPartition(month)).append(", ");
+        }
+        sql.append("PARTITION ").append(MAX_PARTITION).append(" VALUES LESS THAN (MAXVALUE))");
+        Log.i(TAG, "Adding partitions through " + formatMonth(lastMonth));
+        SchemaMigrations.execute(con, sql.toString());
+    }
+
+    // Archives or drops partitions that end on or before the retention cutoff
+    private static void expirePartitions(Connection con, List<String> partitions) throws SQLException {
+        Calendar cutoff = monthStart(System.currentTimeMillis());
+        cutoff.add(Calendar.MONTH, -retentionMonths);
+
+        for (int i = 0; i < partitions.size(); i++) {
+            String partition = partitions.get(i);
+            Calendar month = parseMonth(partition);
+            Calendar end;
+            if (month != null) {
+                end = nextMonth(month);
+            } else if (partition.equals(LEGACY_PARTITION) && i + 1 < partitions.size()) {
+                end = parseMonth(partitions.get(i + 1)); // Ends where the first month starts
+            } else {
+                continue; // pmax, or a partition we don't know how to date
+            }
+            if (end == null || end.after(cutoff)) {
+                continue;
+            }
+
+            if (archiveExpired) {
+                String archive = "session_archive_" + partition.replace(PARTITION_PREFIX, "");
+                Log.i(TAG, "Archiving " + partition + " into " + archive);
+                // Each statement is checked first, so a run that failed halfway picks up where it stopped
+                SchemaMigrations.execute(con, "CREATE TABLE IF NOT EXISTS " + archive + " LIKE session");
+                if (!listPartitions(con, archive).isEmpty()) {
+                    SchemaMigrations.execute(con, "ALTER TABLE " + archive + " REMOVE PARTITIONING");
+                }
+                if (hasRows(con, archive)) {
+                    // Already exchanged; swapping again would put the rows back into session
+                    if (hasRows(con, "session PARTITION (" + partition + ")")) {
+                        Log.w(TAG, archive + " already holds rows and " + partition + " isn't empty, leaving both");
+                        continue;
+                    }
+                } else {
+                    SchemaMigrations.execute(con, "ALTER TABLE session EXCHANGE PARTITION " + partition + " WITH TABLE " + archive);
+                }
+            } else {
+                Log.i(TAG, "Dropping " + partition);
+            }
+            SchemaMigrations.execute(con, "ALTER TABLE session DROP PARTITION " + partition);
+        }
+    }
+
+    // Partition names in range order, or an empty list if the table isn't partitioned
+    private static List<String> listPartitions(Connection con, String table) throws SQLException {
+        List<String> partitions = new ArrayList<>();
+        try (PreparedStatement stmt = con.prepareStatement(
+                "SELECT PARTITION_NAME FROM INFORMATION_SCHEMA.PARTITIONS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND PARTITION_NAME IS NOT NULL " +
+                "ORDER BY PARTITION_ORDINAL_POSITION")) {
+            stmt.setString(1, table);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    partitions.add(rs.getString(1));
+                }
+            }
+        }
+        return partitions;
+    }
+
+    // source is a table name, optionally with a PARTITION (...) clause
+    private static boolean hasRows(Connection con, String source) throws SQLException {
+        try (Statement stmt = con.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT 1 FROM " + source + " LIMIT 1")) {
+            return rs.next();
+        }
+    }
+
+    private static boolean acquireLock(Connection con) throws SQLException {
+        try (Statement stmt = con.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT GET_LOCK('" + LOCK_NAME + "', " + LOCK_TIMEOUT_SECONDS + ")")) {
+            return rs.next() && rs.getInt(1) == 1;
+        }
+    }
+
+    private static String monthPartition(Calendar month) {
+        return "PARTITION " + PARTITION_PREFIX + formatMonth(month)
+                + " VALUES LESS THAN ('" + formatDay(nextMonth(month)) + "')";
+    }
+
+    // p_yyyyMM -> first day of that month, or null for any other name
+    private static Calendar parseMonth(String partition) {
+        String digits = partition.substring(Math.min(partition.length(), PARTITION_PREFIX.length()));
+        if (!partition.startsWith(PARTITION_PREFIX) || !digits.matches("\\d{6}")) {
+            return null;
+        }
+        Calendar month = Calendar.getInstance();
+        month.clear();
+        month.set(Integer.parseInt(digits.substring(0, 4)), Integer.parseInt(digits.substring(4)) - 1, 1);
+        return month;
+    }
+
+    private static Calendar monthStart(long millis) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(millis);
+        int year = calendar.get(Calendar.YEAR);
+        int month = calendar.get(Calendar.MONTH);
+        calendar.clear();
+        calendar.set(year, month, 1);
+        return calendar;
+    }
+
+    private static Calendar nextMonth(Calendar month) {
+        Calendar next = (Calendar) month.clone();
+        next.add(Calendar.MONTH, 1);
+        return next;
+    }
+
+    private static String formatMonth(Calendar month) {
+        return new SimpleDateFormat("yyyyMM", Locale.US).format(month.getTime());
+    }
+
+    private static String formatDay(Calendar day) {
+        return new SimpleDateFormat("yyyy-MM-dd", Locale.US).format(day.getTime());
+    }
+}
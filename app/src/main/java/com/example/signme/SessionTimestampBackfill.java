@@ -0,0 +1,61 @@
+package com.example.signme;
+
+import android.util.Log;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Fills SESSION_START_AT / SESSION_END_AT from the legacy text columns.
+ *
+ * Walks the table in SESSION_ID order, batchSize rows at a time, so no single UPDATE
+ * holds locks on the whole session table. Rows that are already converted are left
+ * alone, so it is safe to run again, e.g. after an old app build wrote more rows.
+ */
+public class SessionTimestampBackfill {
+
+    private static final String TAG = "SessionTimestampBackfill";
+
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    private static final String SELECT_BATCH_END =
+            "SELECT MAX(SESSION_ID) FROM (" +
+            "SELECT SESSION_ID FROM session WHERE SESSION_ID > ? ORDER BY SESSION_ID LIMIT ?) batch";
+    private static final String UPDATE_BATCH =
+            "UPDATE session SET " +
+            "SESSION_START_AT = COALESCE(SESSION_START_AT, " + SchemaMigrations.parseLegacyTime("SESSION_START_TIME") + "), " +
+            "SESSION_END_AT = COALESCE(SESSION_END_AT, " + SchemaMigrations.parseLegacyTime("SESSION_END_TIME") + ") " +
+            "WHERE SESSION_ID > ? AND SESSION_ID <= ? " +
+            "AND ((SESSION_START_AT IS NULL AND SESSION_START_TIME IS NOT NULL) " +
+            "OR (SESSION_END_AT IS NULL AND SESSION_END_TIME IS NOT NULL))";
+
+    // Runs the backfill on con, e.g. SchemaMigrations' maintenance connection, whose lack
+    // of a socket timeout the bulk updates need. Returns how many rows were converted.
+    public static int run(Connection con, int batchSize) throws SQLException {
+        int converted = 0;
+        String batchStart = "";
+        try (PreparedStatement selectEnd = con.prepareStatement(SELECT_BATCH_END);
+             PreparedStatement update = con.prepareStatement(UPDATE_BATCH)) {
+            while (true) {
+                selectEnd.setString(1, batchStart);
+                selectEnd.setInt(2, batchSize);
+                String batchEnd;
+                try (ResultSet rs = selectEnd.executeQuery()) {
+                    batchEnd = rs.next() ? rs.getString(1) : null;
+                }
+                if (batchEnd == null) {
+                    break; // Past the last row
+                }
+
+                update.setString(1, batchStart);
+                update.setString(2, batchEnd);
+                converted += update.executeUpdate();
+                batchStart = batchEnd;
+            }
+        }
+        Log.i(TAG, "Backfilled " + converted + " session rows");
+        return converted;
+    }
+}
@@ -0,0 +1,291 @@
+package com.example.signme;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import java.sql.SQLException;
+import java.sql.SQLTransientException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Write-behind queue for new sessions.
+ *
+ * enqueue() only writes the session to local SQLite, so starting a drive never waits
+ * on MySQL and a session survives the network dropping or the process dying. A
+ * background flush drains the queue in JDBC batches. Inserts are idempotent on
+ * SESSION_ID, so a batch that landed but wasn't acknowledged is simply sent again.
+ * A session whose id turns out to be another driver's is given a new one and sent
+ * again straight away.
+ */
+public class SessionWriteQueue {
+
+    private static final String TAG = "SessionWriteQueue";
+
+    private static final int BATCH_SIZE = 50;
+
+    // Retry backoff: doubles per failed attempt, capped
+    private static final long RETRY_BASE_DELAY_MS = 5 * 1000;
+    private static final long RETRY_MAX_DELAY_MS = 10 * 60 * 1000;
+
+    // A row the server keeps rejecting (not a connection problem) is dropped after this
+    // many tries. Giving a row a new id counts as a try, so that can't loop forever either.
+    private static final int MAX_ATTEMPTS = 10;
+
+    private static SessionWriteQueue instance;
+
+    private final LocalDatabaseHelper dbHelper;
+    private final SessionIdGenerator idGenerator;
+    private final SessionDao sessionDao = new SessionDao();
+    private final AtomicBoolean flushing = new AtomicBoolean();
+    private ScheduledFuture<?> pendingRetry;
+    private final ScheduledExecutorService retryScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "session-write-retry");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public static synchronized SessionWriteQueue getInstance(Context context) {
+        if (instance == null) {
+            instance = new SessionWriteQueue(context);
+        }
+        return instance;
+    }
+
+    private SessionWriteQueue(Context context) {
+        this.dbHelper = LocalDatabaseHelper.getInstance(context);
+        this.idGenerator = SessionIdGenerator.getInstance(context);
+    }
+
+    // Stores the session locally and schedules a flush. Doesn't touch the network.
+    public void enqueue(Session session) {
+        ContentValues values = new ContentValues();
+        values.put("session_id", session.getSessionId());
+        values.put("email", session.getEmail());
+        values.put("start_location", session.getStartLocation());
+        values.put("destination", session.getDestination());
+        values.put("vehicle_type", session.getVehicleType());
+        values.put("start_millis", session.getStartTime().getTime());
+        values.put("enqueued_at", System.currentTimeMillis());
+        dbHelper.getWritableDatabase().insertWithOnConflict(
+                LocalDatabaseHelper.TABLE_PENDING_SESSION_WRITES, null, values, SQLiteDatabase.CONFLICT_IGNORE);
+        flush();
+    }
+
+    // Drains whatever is due in the background. Safe to call any time, e.g. at startup.
+    public void flush() {
+        try {
+            DbExecutor.background(this::drain);
+        } catch (RejectedExecutionException e) {
+            Log.w(TAG, "Flush not queued, will retry: " + e.getMessage());
+            scheduleRetry();
+        }
+    }
+
+    public int getPendingCount() {
+        try (Cursor cursor = dbHelper.getReadableDatabase().rawQuery(
+                "SELECT COUNT(*) FROM " + LocalDatabaseHelper.TABLE_PENDING_SESSION_WRITES, null)) {
+            return cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        }
+    }
+
+    private void drain() {
+        if (!flushing.compareAndSet(false, true)) {
+            return; // Another flush is already draining; it will pick up new rows
+        }
+        try {
+            List<PendingWrite> batch;
+            while (!(batch = loadDue(System.currentTimeMillis())).isEmpty()) {
+                if (!send(batch)) {
+                    break;
+                }
+            }
+        } finally {
+            flushing.set(false);
+        }
+        scheduleRetry();
+    }
+
+    // Returns false if the database is unreachable and draining should stop for now
+    private boolean send(List<PendingWrite> batch) {
+        try {
+            sessionDao.insertAll(sessionsOf(batch));
+            remove(batch);
+            invalidateStatistics(batch);
+            return true;
+        } catch (SQLException e) {
+            if (isConnectionFailure(e)) {
+                Log.w(TAG, "Database unreachable, will retry: " + e.getMessage());
+                postpone(batch, false);
+                return false;
+            }
+        }
+
+        // The server rejected the batch; send rows one at a time so one bad row
+        // doesn't hold up the rest
+        for (PendingWrite write : batch) {
+            List<PendingWrite> single = new ArrayList<>();
+            single.add(write);
+            try {
+                sessionDao.insertAll(sessionsOf(single));
+                remove(single);
+                invalidateStatistics(single);
+            } catch (SessionDao.SessionIdTakenException e) {
+                Log.w(TAG, e.getMessage() + ", sending under a new id");
+                rekey(write);
+            } catch (SQLException e) {
+                if (isConnectionFailure(e)) {
+                    postpone(single, false);
+                    return false;
+                }
+                Log.e(TAG, "Session " + write.session.getSessionId() + " rejected: " + e.getMessage());
+                postpone(single, true);
+            }
+        }
+        return true;
+    }
+
+    private List<PendingWrite> loadDue(long now) {
+        List<PendingWrite> writes = new ArrayList<>();
+        try (Cursor cursor = dbHelper.getReadableDatabase().query(LocalDatabaseHelper.TABLE_PENDING_SESSION_WRITES,
+                new String[]{"session_id", "email", "start_location", "destination", "vehicle_type", "start_millis", "attempts"},
+                "next_attempt_at <= ?", new String[]{String.valueOf(now)},
+                null, null, "enqueued_at", String.valueOf(BATCH_SIZE))) {
+            while (cursor.moveToNext()) {
+                Session session = new Session(
+                        cursor.getString(0),
+                        cursor.getString(1),
+                        cursor.getString(2),
+                        cursor.getString(3),
+                        cursor.getString(4),
+                        new Timestamp(cursor.getLong(5)),
+                        null);
+                writes.add(new PendingWrite(session, cursor.getInt(6)));
+            }
+        }
+        return writes;
+    }
+
+    private void remove(List<PendingWrite> writes) {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (PendingWrite write : writes) {
+                db.delete(LocalDatabaseHelper.TABLE_PENDING_SESSION_WRITES, "session_id = ?",
+                        new String[]{write.session.getSessionId()});
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    // Moves the row to a fresh session id and makes it due now; drain() picks it up again
+    private void rekey(PendingWrite write) {
+        int attempts = write.attempts + 1;
+        if (attempts >= MAX_ATTEMPTS) {
+            List<PendingWrite> single = new ArrayList<>();
+            single.add(write);
+            postpone(single, true); // Drops it
+            return;
+        }
+        ContentValues values = new ContentValues();
+        values.put("session_id", idGenerator.next());
+        values.put("attempts", attempts);
+        values.put("next_attempt_at", 0);
+        dbHelper.getWritableDatabase().update(LocalDatabaseHelper.TABLE_PENDING_SESSION_WRITES, values,
+                "session_id = ?", new String[]{write.session.getSessionId()});
+    }
+
+    // Pushes the rows' next attempt out with exponential backoff. Only rejections count
+    // towards MAX_ATTEMPTS; being offline doesn't use up a row's tries.
+    private void postpone(List<PendingWrite> writes, boolean rejected) {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        long now = System.currentTimeMillis();
+        db.beginTransaction();
+        try {
+            for (PendingWrite write : writes) {
+                int attempts = write.attempts + 1;
+                String[] id = new String[]{write.session.getSessionId()};
+                if (rejected && attempts >= MAX_ATTEMPTS) {
+                    Log.e(TAG, "Dropping session " + id[0] + " after " + attempts + " attempts");
+                    db.delete(LocalDatabaseHelper.TABLE_PENDING_SESSION_WRITES, "session_id = ?", id);
+                    continue;
+                }
+                ContentValues values = new ContentValues();
+                values.put("attempts", rejected ? attempts : write.attempts);
+                values.put("next_attempt_at", now + retryDelay(attempts));
+                db.update(LocalDatabaseHelper.TABLE_PENDING_SESSION_WRITES, values, "session_id = ?", id);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    // Wakes up when the earliest postponed row becomes due
+    private synchronized void scheduleRetry() {
+        if (pendingRetry != null) {
+            pendingRetry.cancel(false);
+            pendingRetry = null;
+        }
+        try (Cursor cursor = dbHelper.getReadableDatabase().rawQuery(
+                "SELECT MIN(next_attempt_at) FROM " + LocalDatabaseHelper.TABLE_PENDING_SESSION_WRITES, null)) {
+            if (cursor.moveToFirst() && !cursor.isNull(0)) {
+                long delay = Math.max(0, cursor.getLong(0) - System.currentTimeMillis());
+                pendingRetry = retryScheduler.schedule(this::flush, Math.max(delay, RETRY_BASE_DELAY_MS), TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private static long retryDelay(int attempts) {
+        long delay = RETRY_BASE_DELAY_MS << Math.min(attempts, 16);
+        return Math.min(delay, RETRY_MAX_DELAY_MS);
+    }
+
+    private static boolean isConnectionFailure(SQLException e) {
+        String state = e.getSQLState();
+        // No SQLState means the pool or breaker refused us before reaching the server
+        return state == null || state.startsWith("08") || e instanceof SQLTransientException;
+    }
+
+    private static void invalidateStatistics(List<PendingWrite> writes) {
+        Set<String> emails = new HashSet<>();
+        for (PendingWrite write : writes) {
+            emails.add(write.session.getEmail());
+        }
+        for (String email : emails) {
+            TripStatisticsStore.getInstance().invalidate(email);
+        }
+    }
+
+    private static List<Session> sessionsOf(List<PendingWrite> writes) {
+        List<Session> sessions = new ArrayList<>();
+        for (PendingWrite write : writes) {
+            sessions.add(write.session);
+        }
+        return sessions;
+    }
+
+    private static class PendingWrite {
+        final Session session;
+        final int attempts;
+
+        PendingWrite(Session session, int attempts) {
+            this.session = session;
+            this.attempts = attempts;
+        }
+    }
+}
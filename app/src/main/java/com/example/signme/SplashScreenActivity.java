@@ -3,6 +3,7 @@ package com.example.signme;
 import android.content.Intent;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.Looper;
 import android.view.animation.AlphaAnimation;
 import android.view.animation.Animation;
 import android.view.animation.AnimationUtils;
@@ -16,11 +17,22 @@ public class SplashScreenActivity extends AppCompatActivity {
     private ImageView imageA, imageB, imageC;
     private TextView logoText, taglineText;
 
+    // Shortest time the splash stays up, so it doesn't just flash on a warm start
+    private static final long MIN_SPLASH_MS = 1000;
+    // Longest we'll wait for warmup before moving on anyway
+    private static final long WARMUP_DEADLINE_MS = 6000;
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private boolean launched;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.splash_screen);
 
+        // Connect, migrate and open the local database while the animation plays
+        AppWarmup warmup = AppWarmup.start(this);
+
         imageA = findViewById(R.id.imageA);
         imageB = findViewById(R.id.imageB);
         imageC = findViewById(R.id.imageC);
@@ -32,20 +44,14 @@ public class SplashScreenActivity extends AppCompatActivity {
         imageA.setVisibility(android.view.View.VISIBLE);
         imageA.startAnimation(zoomAnimation);
 
-        new Handler().postDelayed(new Runnable() {
-            @Override
-            public void run() {
-                imageB.setVisibility(android.view.View.VISIBLE);
-                imageB.startAnimation(zoomAnimation);
-            }
+        handler.postDelayed(() -> {
+            imageB.setVisibility(android.view.View.VISIBLE);
+            imageB.startAnimation(zoomAnimation);
         }, 1000); // Delay for imageB
 
-        new Handler().postDelayed(new Runnable() {
-            @Override
-            public void run() {
-                imageC.setVisibility(android.view.View.VISIBLE);
-                imageC.startAnimation(zoomAnimation);
-            }
+        handler.postDelayed(() -> {
+            imageC.setVisibility(android.view.View.VISIBLE);
+            imageC.startAnimation(zoomAnimation);
         }, 2000); // Delay for imageC
 
         // Set fade-in animation for logoText and taglineText
@@ -57,14 +63,47 @@ public class SplashScreenActivity extends AppCompatActivity {
         taglineText.setVisibility(android.view.View.VISIBLE);
         taglineText.startAnimation(fadeInAnimation);
 
-        // Move to next activity after splash screen finishes
-        new Handler().postDelayed(new Runnable() {
-            @Override
-            public void run() {
-                Intent mainIntent = new Intent(SplashScreenActivity.this, MainActivity.class);
-                startActivity(mainIntent);
-                finish(); // Finish splash screen activity
-            }
-        }, 6000); // 6 seconds delay, adjust as needed
+        // A remembered driver goes straight to Home; it loads from the warmed-up caches
+        // and checks the session with the server itself
+        String rememberedEmail = LoginSession.getInstance(this).getEmail();
+        if (rememberedEmail != null) {
+            handler.postDelayed(() -> openHomeActivity(rememberedEmail), MIN_SPLASH_MS);
+            return;
+        }
+
+        // Move on as soon as warmup is done (but not before the logo has shown), or at
+        // the deadline if it's still going
+        handler.postDelayed(() -> warmup.whenReady(this::openMainActivity), MIN_SPLASH_MS);
+        handler.postDelayed(this::openMainActivity, WARMUP_DEADLINE_MS);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        handler.removeCallbacksAndMessages(null);
+    }
+
+    private void openMainActivity() {
+        if (launched || isFinishing()) {
+            return;
+        }
+        launched = true;
+        handler.removeCallbacksAndMessages(null);
+        Intent mainIntent = new Intent(SplashScreenActivity.this, MainActivity.class);
+        startActivity(mainIntent);
+        finish(); // Finish splash screen activity
+    }
+
+    private void openHomeActivity(String email) {
+        if (launched || isFinishing()) {
+            return;
+        }
+        launched = true;
+        handler.removeCallbacksAndMessages(null);
+        Intent homeIntent = new Intent(SplashScreenActivity.this, HomeActivity.class);
+        homeIntent.putExtra("email", email);
+        homeIntent.putExtra(HomeActivity.EXTRA_RESTORED_SESSION, true);
+        startActivity(homeIntent);
+        finish();
     }
 }
@@ -0,0 +1,71 @@
+package com.example.signme;
+
+import android.graphics.Canvas;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+// Keeps the current date heading pinned to the top of the history list
+public class StickyHeaderDecoration extends RecyclerView.ItemDecoration {
+
+    private final HistoryAdapter adapter;
+    private TextView headerView;
+
+    public StickyHeaderDecoration(HistoryAdapter adapter) {
+        this.adapter = adapter;
+    }
+
+    @Override
+    public void onDrawOver(@NonNull Canvas canvas, @NonNull RecyclerView parent, @NonNull RecyclerView.State state) {
+        View topChild = parent.getChildAt(0);
+        if (topChild == null) {
+            return;
+        }
+        int topPosition = parent.getChildAdapterPosition(topChild);
+        if (topPosition == RecyclerView.NO_POSITION) {
+            return;
+        }
+
+        TextView header = getHeaderView(parent);
+        header.setText(adapter.getSectionLabel(topPosition));
+        int headerHeight = header.getHeight();
+
+        // Let the next section's heading push the pinned one up as it arrives
+        int offset = 0;
+        for (int i = 1; i < parent.getChildCount(); i++) {
+            View child = parent.getChildAt(i);
+            if (child.getTop() >= headerHeight) {
+                break;
+            }
+            int position = parent.getChildAdapterPosition(child);
+            if (position != RecyclerView.NO_POSITION
+                    && adapter.getItemViewType(position) == HistoryAdapter.TYPE_HEADER) {
+                offset = child.getTop() - headerHeight;
+                break;
+            }
+        }
+
+        canvas.save();
+        canvas.translate(parent.getPaddingLeft(), offset);
+        header.draw(canvas);
+        canvas.restore();
+    }
+
+    // Inflated once and re-measured only when the list width changes
+    private TextView getHeaderView(RecyclerView parent) {
+        int width = parent.getWidth() - parent.getPaddingLeft() - parent.getPaddingRight();
+        if (headerView == null) {
+            headerView = (TextView) LayoutInflater.from(parent.getContext())
+                    .inflate(R.layout.item_history_header, parent, false);
+        }
+        if (headerView.getWidth() != width) {
+            headerView.measure(View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.EXACTLY),
+                    View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED));
+            headerView.layout(0, 0, width, headerView.getMeasuredHeight());
+        }
+        return headerView;
+    }
+}
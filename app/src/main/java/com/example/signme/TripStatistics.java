@@ -0,0 +1,113 @@
+package com.example.signme;
+
+import java.util.List;
+
+// Aggregates over one driver's sessions, as computed by TripStatisticsDao
+public class TripStatistics {
+
+    // Trips and driving time in one day or week
+    public static class Period {
+        private final String label;
+        private final int trips;
+        private final long drivingSeconds;
+
+        public Period(String label, int trips, long drivingSeconds) {
+            this.label = label;
+            this.trips = trips;
+            this.drivingSeconds = drivingSeconds;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public int getTrips() {
+            return trips;
+        }
+
+        public long getDrivingSeconds() {
+            return drivingSeconds;
+        }
+    }
+
+    // Trips between one start location and destination
+    public static class Route {
+        private final String startLocation;
+        private final String destination;
+        private final int trips;
+        private final long averageSeconds;
+        private final long maxSeconds;
+
+        public Route(String startLocation, String destination, int trips, long averageSeconds, long maxSeconds) {
+            this.startLocation = startLocation;
+            this.destination = destination;
+            this.trips = trips;
+            this.averageSeconds = averageSeconds;
+            this.maxSeconds = maxSeconds;
+        }
+
+        public String getStartLocation() {
+            return startLocation;
+        }
+
+        public String getDestination() {
+            return destination;
+        }
+
+        public int getTrips() {
+            return trips;
+        }
+
+        public long getAverageSeconds() {
+            return averageSeconds;
+        }
+
+        public long getMaxSeconds() {
+            return maxSeconds;
+        }
+    }
+
+    private final int totalTrips;
+    private final int finishedTrips;
+    private final long totalDrivingSeconds;
+    private final List<Period> days;
+    private final List<Period> weeks;
+    private final List<Route> routes;
+
+    public TripStatistics(int totalTrips, int finishedTrips, long totalDrivingSeconds,
+                          List<Period> days, List<Period> weeks, List<Route> routes) {
+        this.totalTrips = totalTrips;
+        this.finishedTrips = finishedTrips;
+        this.totalDrivingSeconds = totalDrivingSeconds;
+        this.days = days;
+        this.weeks = weeks;
+        this.routes = routes;
+    }
+
+    public int getTotalTrips() {
+        return totalTrips;
+    }
+
+    public int getFinishedTrips() {
+        return finishedTrips;
+    }
+
+    public long getTotalDrivingSeconds() {
+        return totalDrivingSeconds;
+    }
+
+    // Most recent first
+    public List<Period> getDays() {
+        return days;
+    }
+
+    // Most recent first
+    public List<Period> getWeeks() {
+        return weeks;
+    }
+
+    // Most driven first
+    public List<Route> getRoutes() {
+        return routes;
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.signme;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+
+/**
+ * Computes a driver's trip statistics in MySQL.
+ *
+ * Everything is aggregated with GROUP BY on the server, so however many sessions a
+ * driver has, only a few dozen rows come back. Day and week queries are bounded by
+ * SESSION_START_AT, so they range-scan idx_session_email_start and prune partitions.
+ */
+public class TripStatisticsDao {
+
+    public static final int RECENT_DAYS = 14;
+    public static final int RECENT_WEEKS = 12;
+    public static final int TOP_ROUTES = 10;
+
+    // Only finished trips have a duration
+    private static final String DURATION = "TIMESTAMPDIFF(SECOND, SESSION_START_AT, SESSION_END_AT)";
+
+    private static final String SELECT_TOTALS =
+            "SELECT COUNT(*), COUNT(SESSION_END_AT), COALESCE(SUM(" + DURATION + "), 0) " +
+            "FROM session WHERE EMAIL = ?";
+    private static final String SELECT_DAYS =
+            "SELECT DATE_FORMAT(SESSION_START_AT, '%d-%m-%Y') AS day, COUNT(*), COALESCE(SUM(" + DURATION + "), 0) " +
+            "FROM session WHERE EMAIL = ? AND SESSION_START_AT >= ? " +
+            "GROUP BY DATE(SESSION_START_AT), day " +
+            "ORDER BY DATE(SESSION_START_AT) DESC";
+    // ISO weeks, labelled by the Monday they start on
+    private static final String SELECT_WEEKS =
+            "SELECT DATE_FORMAT(MIN(DATE(SESSION_START_AT) - INTERVAL WEEKDAY(SESSION_START_AT) DAY), '%d-%m-%Y'), " +
+            "COUNT(*), COALESCE(SUM(" + DURATION + "), 0) " +
+            "FROM session WHERE EMAIL = ? AND SESSION_START_AT >= ? " +
+            "GROUP BY YEARWEEK(SESSION_START_AT, 3) " +
+            "ORDER BY YEARWEEK(SESSION_START_AT, 3) DESC";
+    // Grouped on the interned location ids, then joined to their names
+    private static final String SELECT_ROUTES =
+            "SELECT start.NAME, destination.NAME, route.trips, route.average_seconds, route.max_seconds FROM (" +
+            "SELECT START_LOCATION_ID, DESTINATION_ID, COUNT(*) AS trips, " +
+            "COALESCE(AVG(" + DURATION + "), 0) AS average_seconds, COALESCE(MAX(" + DURATION + "), 0) AS max_seconds " +
+            "FROM session WHERE EMAIL = ? AND START_LOCATION_ID IS NOT NULL AND DESTINATION_ID IS NOT NULL " +
+            "GROUP BY START_LOCATION_ID, DESTINATION_ID " +
+            "ORDER BY trips DESC LIMIT ?) route " +
+            "JOIN location start ON start.LOCATION_ID = route.START_LOCATION_ID " +
+            "JOIN location destination ON destination.LOCATION_ID = route.DESTINATION_ID " +
+            "ORDER BY route.trips DESC";
+
+    private final ConnectionClass connectionClass = new ConnectionClass();
+
+    public TripStatistics load(String email) throws SQLException {
+        Connection con = connectionClass.READ_CONN();
+        if (con == null) {
+            throw new SQLException("Error in connection with MySQL server");
+        }
+        try {
+            int totalTrips;
+            int finishedTrips;
+            long totalSeconds;
+            try (PreparedStatement stmt = con.prepareStatement(SELECT_TOTALS)) {
+                stmt.setString(1, email);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    rs.next();
+                    totalTrips = rs.getInt(1);
+                    finishedTrips = rs.getInt(2);
+                    totalSeconds = rs.getLong(3);
+                }
+            }
+
+            Calendar since = Calendar.getInstance();
+            since.set(Calendar.HOUR_OF_DAY, 0);
+            since.set(Calendar.MINUTE, 0);
+            since.set(Calendar.SECOND, 0);
+            since.set(Calendar.MILLISECOND, 0);
+            since.add(Calendar.DAY_OF_YEAR, -(RECENT_DAYS - 1));
+            List<TripStatistics.Period> days = loadPeriods(con, SELECT_DAYS, email, new Timestamp(since.getTimeInMillis()));
+
+            since.add(Calendar.DAY_OF_YEAR, RECENT_DAYS - 1);
+            since.setFirstDayOfWeek(Calendar.MONDAY);
+            since.set(Calendar.DAY_OF_WEEK, Calendar.MONDAY);
+            since.add(Calendar.WEEK_OF_YEAR, -(RECENT_WEEKS - 1));
+            List<TripStatistics.Period> weeks = loadPeriods(con, SELECT_WEEKS, email, new Timestamp(since.getTimeInMillis()));
+
+            List<TripStatistics.Route> routes = new ArrayList<>();
+            try (PreparedStatement stmt = con.prepareStatement(SELECT_ROUTES)) {
+                stmt.setString(1, email);
+                stmt.setInt(2, TOP_ROUTES);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        routes.add(new TripStatistics.Route(rs.getString(1), rs.getString(2),
+                                rs.getInt(3), Math.round(rs.getDouble(4)), rs.getLong(5)));
+                    }
+                }
+            }
+
+            return new TripStatistics(totalTrips, finishedTrips, totalSeconds, days, weeks, routes);
+        } finally {
+            con.close();
+        }
+    }
+
+    private static List<TripStatistics.Period> loadPeriods(Connection con, String sql, String email,
+                                                           Timestamp since) throws SQLException {
+        List<TripStatistics.Period> periods = new ArrayList<>();
+        try (PreparedStatement stmt = con.prepareStatement(sql)) {
+            stmt.setString(1, email);
+            stmt.setTimestamp(2, since);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    periods.add(new TripStatistics.Period(rs.getString(1), rs.getInt(2), rs.getLong(3)));
+                }
+            }
+        }
+        return periods;
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.signme;
+
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-driver cache of TripStatistics.
+ *
+ * Statistics only change when sessions do, so they are computed once and kept until
+ * SessionWriteQueue delivers a new session or a history sync brings in changes, which
+ * both call invalidate(). A short expiry covers changes made from other devices.
+ */
+public class TripStatisticsStore {
+
+    private static final long MAX_AGE_MS = 10 * 60 * 1000;
+
+    private static final TripStatisticsStore instance = new TripStatisticsStore();
+
+    private final TripStatisticsDao statisticsDao = new TripStatisticsDao();
+    private final Map<String, Entry> cache = new ConcurrentHashMap<>();
+    // Bumped on every invalidation so a load that raced with a write isn't cached
+    private final AtomicLong generation = new AtomicLong();
+
+    public static TripStatisticsStore getInstance() {
+        return instance;
+    }
+
+    private TripStatisticsStore() {
+    }
+
+    // Returns cached statistics or computes them. Blocks, so call it from a DbExecutor task.
+    public TripStatistics get(String email) throws SQLException {
+        Entry entry = cache.get(email);
+        if (entry != null && System.currentTimeMillis() - entry.loadedAt < MAX_AGE_MS) {
+            return entry.statistics;
+        }
+        long loadGeneration = generation.get();
+        TripStatistics statistics = statisticsDao.load(email);
+        if (generation.get() == loadGeneration) {
+            cache.put(email, new Entry(statistics));
+        }
+        return statistics;
+    }
+
+    public void invalidate(String email) {
+        generation.incrementAndGet();
+        cache.remove(email);
+    }
+
+    private static class Entry {
+        final TripStatistics statistics;
+        final long loadedAt = System.currentTimeMillis();
+
+        Entry(TripStatistics statistics) {
+            this.statistics = statistics;
+        }
+    }
+}
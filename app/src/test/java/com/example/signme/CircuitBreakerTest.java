@@ -0,0 +1,97 @@
+package com.example.signme;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for CircuitBreaker's closed / open / half-open transitions.
+ */
+public class CircuitBreakerTest {
+
+    private static final int THRESHOLD = 3;
+    private static final long OPEN_MS = 50;
+
+    private final CircuitBreaker breaker = new CircuitBreaker("test", THRESHOLD, OPEN_MS);
+
+    @Test
+    public void closed_allowsRequestsBelowThreshold() {
+        for (int i = 0; i < THRESHOLD - 1; i++) {
+            assertTrue(breaker.allowRequest());
+            breaker.recordFailure();
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.allowRequest());
+    }
+
+    @Test
+    public void success_resetsFailureCount() {
+        breaker.recordFailure();
+        breaker.recordFailure();
+        breaker.recordSuccess();
+        breaker.recordFailure();
+        breaker.recordFailure();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void open_failsFastAfterThreshold() {
+        open();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+    }
+
+    @Test
+    public void open_letsOneProbeThroughAfterOpenDuration() throws InterruptedException {
+        open();
+        Thread.sleep(OPEN_MS * 2);
+        assertTrue(breaker.allowRequest());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+    }
+
+    @Test
+    public void halfOpen_closesWhenProbeSucceeds() throws InterruptedException {
+        open();
+        Thread.sleep(OPEN_MS * 2);
+        assertTrue(breaker.allowRequest());
+        breaker.recordSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.allowRequest());
+        assertTrue(breaker.allowRequest());
+    }
+
+    @Test
+    public void halfOpen_reopensWhenProbeFails() throws InterruptedException {
+        open();
+        Thread.sleep(OPEN_MS * 2);
+        assertTrue(breaker.allowRequest());
+        breaker.recordFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+    }
+
+    @Test
+    public void halfOpen_probeAbandonedByRuntimeExceptionDoesNotWedgeBreaker() throws InterruptedException {
+        open();
+        Thread.sleep(OPEN_MS * 2);
+        try {
+            assertTrue(breaker.allowRequest());
+            throw new IllegalStateException("Driver bug"); // Neither success nor failure recorded
+        } catch (IllegalStateException expected) {
+            // The caller gave up on the probe
+        }
+        assertFalse(breaker.allowRequest());
+
+        Thread.sleep(OPEN_MS * 2);
+        assertTrue(breaker.allowRequest());
+        breaker.recordSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    private void open() {
+        for (int i = 0; i < THRESHOLD; i++) {
+            breaker.recordFailure();
+        }
+    }
+}
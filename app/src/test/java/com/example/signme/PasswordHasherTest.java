@@ -0,0 +1,28 @@
+package com.example.signme;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for PasswordHasher.costOf(), which decides whether a stored hash is rehashed.
+ */
+public class PasswordHasherTest {
+
+    @Test
+    public void costOf_readsTheWorkFactor() {
+        assertEquals(12, PasswordHasher.costOf("$2a$12$R9h/cIPz0gi.URNNX3kh2OPST9/PgBkqquzi.Ss7KIUgO2t0jWMUW"));
+        assertEquals(10, PasswordHasher.costOf("$2b$10$N9qo8uLOickgx2ZMRZoMyeIjZAgcfl7p92ldGxad68LJZdL17lhWy"));
+        assertEquals(4, PasswordHasher.costOf("$2y$04$abcdefghijklmnopqrstuv"));
+    }
+
+    @Test
+    public void costOf_rejectsAnythingElse() {
+        assertEquals(-1, PasswordHasher.costOf(null));
+        assertEquals(-1, PasswordHasher.costOf(""));
+        assertEquals(-1, PasswordHasher.costOf("$2a$1"));
+        assertEquals(-1, PasswordHasher.costOf("plaintext-password"));
+        assertEquals(-1, PasswordHasher.costOf("2a$12$R9h/cIPz0gi.URNNX3kh2O"));
+        assertEquals(-1, PasswordHasher.costOf("$2a$xx$R9h/cIPz0gi.URNNX3kh2O"));
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.signme;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the FTS match expression SessionHistoryMirror builds from a search box.
+ */
+public class SessionHistoryMirrorTest {
+
+    @Test
+    public void toMatchExpression_prefixMatchesEachTerm() {
+        assertEquals("anu*", SessionHistoryMirror.toMatchExpression("Anu"));
+        assertEquals("anu* jun*", SessionHistoryMirror.toMatchExpression("Anu  jun-"));
+        assertEquals("route* 66*", SessionHistoryMirror.toMatchExpression("  Route 66 "));
+    }
+
+    @Test
+    public void toMatchExpression_keepsNonAsciiLetters() {
+        assertEquals("s\u00e3o* paulo*", SessionHistoryMirror.toMatchExpression("S\u00e3o Paulo"));
+    }
+
+    @Test
+    public void toMatchExpression_dropsFtsSyntax() {
+        assertEquals("a* or* b*", SessionHistoryMirror.toMatchExpression("a OR b"));
+        assertEquals("kandy* near* 2* colombo*", SessionHistoryMirror.toMatchExpression("\"kandy\" NEAR/2 colombo*"));
+        assertEquals("galle* matara*", SessionHistoryMirror.toMatchExpression("galle -matara"));
+    }
+
+    @Test
+    public void toMatchExpression_isEmptyWithoutLettersOrDigits() {
+        assertEquals("", SessionHistoryMirror.toMatchExpression(""));
+        assertEquals("", SessionHistoryMirror.toMatchExpression("  \"*-()  "));
+    }
+}
@@ -0,0 +1,273 @@
+package com.example.signme;
+
+import android.content.SharedPreferences;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for SessionIdGenerator: IDs strictly increase on a device whatever
+ * the clock does, and their encoding sorts like the IDs.
+ */
+public class SessionIdGeneratorTest {
+
+    // 2024-01-01T00:00:00Z, SessionIdGenerator's epoch
+    private static final long EPOCH_MS = 1704067200000L;
+    // Node and sequence bits below the timestamp
+    private static final int LOW_BITS = 22;
+    // IDs per millisecond before the generator borrows the next one
+    private static final int SEQUENCE_SIZE = 1024;
+
+    // Some time after the epoch, on a clock the test controls
+    private static final long NOW = EPOCH_MS + 1000000L;
+
+    @Test
+    public void nextId_increasesWithinOneMillisecond() {
+        FakeClockGenerator generator = new FakeClockGenerator(new FakePreferences(), NOW);
+        long previous = generator.nextId();
+        for (int i = 1; i < SEQUENCE_SIZE; i++) {
+            long id = generator.nextId();
+            assertTrue(id > previous);
+            assertEquals(NOW, SessionIdGenerator.timestampOf(id));
+            previous = id;
+        }
+    }
+
+    @Test
+    public void nextId_borrowsNextMillisecondWhenSequenceRunsOut() {
+        FakeClockGenerator generator = new FakeClockGenerator(new FakePreferences(), NOW);
+        long last = 0;
+        for (int i = 0; i < SEQUENCE_SIZE; i++) {
+            last = generator.nextId();
+        }
+        long borrowed = generator.nextId();
+        assertTrue(borrowed > last);
+        assertEquals(NOW + 1, SessionIdGenerator.timestampOf(borrowed));
+
+        // Once the clock catches up, the borrowed millisecond isn't issued again
+        generator.now = NOW + 1;
+        assertTrue(generator.nextId() > borrowed);
+    }
+
+    @Test
+    public void nextId_keepsIncreasingWhenClockGoesBack() {
+        FakeClockGenerator generator = new FakeClockGenerator(new FakePreferences(), NOW);
+        long before = generator.nextId();
+        generator.now = NOW - 60 * 1000;
+        long after = generator.nextId();
+        assertTrue(after > before);
+        assertEquals(NOW, SessionIdGenerator.timestampOf(after));
+    }
+
+    @Test
+    public void nextId_keepsIncreasingAcrossRestartsWithClockSetBack() {
+        FakePreferences prefs = new FakePreferences();
+        long before = new FakeClockGenerator(prefs, NOW).nextId();
+        long after = new FakeClockGenerator(prefs, NOW - 60 * 1000).nextId();
+        assertTrue(after > before);
+        assertTrue(SessionIdGenerator.encode(after).compareTo(SessionIdGenerator.encode(before)) > 0);
+    }
+
+    @Test
+    public void nextId_keepsNodeIdAcrossRestarts() {
+        FakePreferences prefs = new FakePreferences();
+        long first = new FakeClockGenerator(prefs, NOW).nextId();
+        long second = new FakeClockGenerator(prefs, NOW + 1).nextId();
+        long nodeMask = ((1L << LOW_BITS) - 1) & ~(SEQUENCE_SIZE - 1L);
+        assertEquals(first & nodeMask, second & nodeMask);
+    }
+
+    @Test
+    public void encode_isFixedWidthCrockfordBase32() {
+        assertEquals("0000000000000", SessionIdGenerator.encode(0));
+        assertEquals("000000000000Z", SessionIdGenerator.encode(31));
+        assertEquals("0000000000010", SessionIdGenerator.encode(32));
+        assertEquals("7ZZZZZZZZZZZZ", SessionIdGenerator.encode(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void encode_skipsAmbiguousLetters() {
+        Random random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            String encoded = SessionIdGenerator.encode(random.nextLong() >>> 1);
+            assertFalse(encoded, encoded.matches(".*[ILOU].*"));
+        }
+    }
+
+    @Test
+    public void encode_sortsLikeTheIds() {
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            long a = random.nextLong() >>> 1;
+            long b = random.nextLong() >>> 1;
+            assertEquals(a + " vs " + b, Long.signum(Long.compare(a, b)),
+                    Long.signum(SessionIdGenerator.encode(a).compareTo(SessionIdGenerator.encode(b))));
+        }
+    }
+
+    @Test
+    public void encode_laterMillisecondSortsAfterAnyNodeAndSequence() {
+        long millis = 123456789L;
+        String latestInMillisecond = SessionIdGenerator.encode((millis << LOW_BITS) | ((1L << LOW_BITS) - 1));
+        String firstInNextMillisecond = SessionIdGenerator.encode((millis + 1) << LOW_BITS);
+        assertTrue(latestInMillisecond.compareTo(firstInNextMillisecond) < 0);
+    }
+
+    @Test
+    public void timestampOf_readsTheTimeBits() {
+        assertEquals(EPOCH_MS, SessionIdGenerator.timestampOf(0));
+        assertEquals(EPOCH_MS + 1000, SessionIdGenerator.timestampOf((1000L << LOW_BITS) | 12345));
+    }
+
+    private static class FakeClockGenerator extends SessionIdGenerator {
+        long now;
+
+        FakeClockGenerator(SharedPreferences prefs, long now) {
+            super(prefs);
+            this.now = now;
+        }
+
+        @Override
+        long currentTimeMillis() {
+            return now;
+        }
+    }
+
+    // In-memory SharedPreferences; edits apply immediately
+    private static class FakePreferences implements SharedPreferences {
+        private final Map<String, Object> values = new HashMap<>();
+
+        @Override
+        public Map<String, ?> getAll() {
+            return new HashMap<>(values);
+        }
+
+        @Override
+        public String getString(String key, String defValue) {
+            return values.containsKey(key) ? (String) values.get(key) : defValue;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Set<String> getStringSet(String key, Set<String> defValues) {
+            return values.containsKey(key) ? (Set<String>) values.get(key) : defValues;
+        }
+
+        @Override
+        public int getInt(String key, int defValue) {
+            return values.containsKey(key) ? (Integer) values.get(key) : defValue;
+        }
+
+        @Override
+        public long getLong(String key, long defValue) {
+            return values.containsKey(key) ? (Long) values.get(key) : defValue;
+        }
+
+        @Override
+        public float getFloat(String key, float defValue) {
+            return values.containsKey(key) ? (Float) values.get(key) : defValue;
+        }
+
+        @Override
+        public boolean getBoolean(String key, boolean defValue) {
+            return values.containsKey(key) ? (Boolean) values.get(key) : defValue;
+        }
+
+        @Override
+        public boolean contains(String key) {
+            return values.containsKey(key);
+        }
+
+        @Override
+        public Editor edit() {
+            return new FakeEditor();
+        }
+
+        @Override
+        public void registerOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        }
+
+        @Override
+        public void unregisterOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        }
+
+        private class FakeEditor implements Editor {
+            private final Map<String, Object> changes = new HashMap<>();
+            private boolean clear;
+
+            @Override
+            public Editor putString(String key, String value) {
+                changes.put(key, value);
+                return this;
+            }
+
+            @Override
+            public Editor putStringSet(String key, Set<String> values) {
+                changes.put(key, values);
+                return this;
+            }
+
+            @Override
+            public Editor putInt(String key, int value) {
+                changes.put(key, value);
+                return this;
+            }
+
+            @Override
+            public Editor putLong(String key, long value) {
+                changes.put(key, value);
+                return this;
+            }
+
+            @Override
+            public Editor putFloat(String key, float value) {
+                changes.put(key, value);
+                return this;
+            }
+
+            @Override
+            public Editor putBoolean(String key, boolean value) {
+                changes.put(key, value);
+                return this;
+            }
+
+            @Override
+            public Editor remove(String key) {
+                changes.put(key, null);
+                return this;
+            }
+
+            @Override
+            public Editor clear() {
+                clear = true;
+                return this;
+            }
+
+            @Override
+            public boolean commit() {
+                apply();
+                return true;
+            }
+
+            @Override
+            public void apply() {
+                if (clear) {
+                    values.clear();
+                }
+                for (Map.Entry<String, Object> change : changes.entrySet()) {
+                    if (change.getValue() == null) {
+                        values.remove(change.getKey());
+                    } else {
+                        values.put(change.getKey(), change.getValue());
+                    }
+                }
+            }
+        }
+    }
+}